@@ -2,7 +2,6 @@ package db.framework.interactions;
 
 import db.framework.runner.MainRunner;
 import db.framework.utils.StepUtils;
-import db.framework.utils.Utils;
 import org.junit.Assert;
 import org.openqa.selenium.*;
 import org.openqa.selenium.interactions.Actions;
@@ -318,7 +317,6 @@ public class Clicks {
 
         if (StepUtils.ie() || StepUtils.firefox()) {
             // IE & firefox like to leave the mouse over dropdown menus
-            Utils.redirectSErr();
             if (Elements.elementPresent("home.open_flyout") || Elements.elementPresent("home.my_account_menu")
                     || Elements.elementPresent("home.quickbag_items_list")) {
                 try {
@@ -327,7 +325,6 @@ public class Clicks {
                     // ignore
                 }
             }
-            Utils.resetSErr();
         }
         Navigate.runAfterNavigation();
     }
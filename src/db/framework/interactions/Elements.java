@@ -1,6 +1,8 @@
 package db.framework.interactions;
 
 import db.framework.runner.MainRunner;
+import db.framework.utils.DBLog;
+import db.framework.utils.LocatorIndex;
 import db.framework.utils.PageElement;
 import db.framework.utils.StepUtils;
 import db.framework.utils.Utils;
@@ -18,19 +20,52 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import static db.framework.utils.Utils.errLog;
 import static org.javalite.common.Util.readFile;
 
 /**
  * A collection of ways to get elements and other information about them
  */
 public class Elements {
+
+    private static final int MAX_TABLE_PAGES = 1000;
+
+    private static final String TABLE_TEXT_SCRIPT = "var rows = arguments[0].rows, headers = [], result = [];" +
+            "for (var i = 0; i < rows.length; i++) {" +
+            "  var cells = rows[i].cells, row = [], hasData = false;" +
+            "  for (var j = 0; j < cells.length; j++) {" +
+            "    hasData = hasData || cells[j].tagName === 'TD';" +
+            "    row.push((cells[j].innerText || cells[j].textContent || '').trim());" +
+            "  }" +
+            "  if (hasData) { result.push(row); } else if (result.length === 0) { headers = row; }" +
+            "}" +
+            "return {headers: headers, rows: result};";
+
+    private static final String NEXT_PAGE_SCRIPT = "var links = arguments[0], active = -1;" +
+            "function disabled(a) {" +
+            "  return /\\bdisabled\\b/.test(a.className + ' ' + (a.parentElement ? a.parentElement.className : ''));" +
+            "}" +
+            "for (var i = 0; i < links.length; i++) {" +
+            "  if (links[i].parentElement && /\\bactive\\b/.test(links[i].parentElement.className)) { active = i; }" +
+            "}" +
+            "if (active >= 0) {" +
+            "  var next = links[active + 1];" +
+            "  return next && !disabled(next) ? next : null;" +
+            "}" +
+            "for (var i = 0; i < links.length; i++) {" +
+            "  if (/^(next|\\u00bb|\\u203a|>)/i.test((links[i].textContent || '').trim()) && !disabled(links[i])) { return links[i]; }" +
+            "}" +
+            "return null;";
+
     /**
      * Retrieves the first element
      *
@@ -64,7 +99,7 @@ public class Elements {
             return elements.get(0);
         } catch (NoSuchElementException ex) {
             System.err.println("-->StepUtils.findElement() no element found with selector: " + selector);
-            errLog.println(ex);
+            DBLog.warn(ex.toString());
         }
         return null;
     }
@@ -351,6 +386,10 @@ public class Elements {
      * @return element value from json file
      */
     public static ArrayList<String> getValues(String key) {
+        LocatorIndex.Entry entry = LocatorIndex.find(key);
+        if (entry != null) {
+            return new ArrayList<>(entry.getValues());
+        }
         return new PageElement(key).elementValues;
     }
 
@@ -361,6 +400,12 @@ public class Elements {
      * @return By selector retrieved from json file
      */
     public static By element(String elementKey) {
+        LocatorIndex.Entry entry = LocatorIndex.find(elementKey);
+        if (entry != null && entry.getBy() != null) {
+            return entry.getBy();
+        }
+
+        // not indexed, element file was added or changed at runtime
         PageElement elementData = new PageElement(elementKey);
         if (elementData.elementValues.isEmpty()) {
             System.err.println("ERROR - UI: element '" + elementKey + "' is not defined.");
@@ -398,21 +443,31 @@ public class Elements {
      * @return By selector built using json file and parameters
      */
     public static By paramElement(String elementKey, String... params) {
-        PageElement elementData = new PageElement(elementKey);
-        if (elementData.elementValues.isEmpty()) {
+        List<String> locators;
+        List<String> values;
+        LocatorIndex.Entry entry = LocatorIndex.find(elementKey);
+        if (entry != null && entry.getBy() != null) {
+            locators = entry.getLocators();
+            values = entry.getValues();
+        } else {
+            PageElement elementData = new PageElement(elementKey);
+            locators = elementData.elementLocators;
+            values = elementData.elementValues;
+        }
+        if (values.isEmpty()) {
             System.err.println("ERROR - UI: element '" + elementKey + "' is not defined.");
         }
-        if (elementData.elementLocators.isEmpty()) {
+        if (locators.isEmpty()) {
             System.err.println("ERROR - UI: element locator is not recognizable.");
         }
-        if (elementData.elementLocators.isEmpty() || elementData.elementValues.isEmpty()) {
+        if (locators.isEmpty() || values.isEmpty()) {
             return null;
         }
 
-        By[] bys = new By[elementData.elementLocators.size()];
+        By[] bys = new By[locators.size()];
 
-        for (int i = 0; i < elementData.elementLocators.size(); i++) {
-            String paramValue = elementData.elementValues.get(i);
+        for (int i = 0; i < locators.size(); i++) {
+            String paramValue = values.get(i);
             int index = 1;
             for (String param : params) {
                 paramValue = paramValue.replace("{arg" + index + "}", param);
@@ -420,13 +475,20 @@ public class Elements {
                 index++;
             }
 
-            bys[i] = Elements.findLocatorMethod(elementData.elementLocators.get(i), paramValue);
+            bys[i] = Elements.findLocatorMethod(locators.get(i), paramValue);
         }
 
         return new ByAll(bys);
     }
 
-    private static By findLocatorMethod(String locator, String value) {
+    /**
+     * Creates a By selector for a locator strategy
+     *
+     * @param locator locator strategy as used in json files (id, cssSelector, xpath...)
+     * @param value   value to locate
+     * @return By selector or null if locator strategy is not supported
+     */
+    public static By findLocatorMethod(String locator, String value) {
         switch (locator) {
             case "id":
                 return By.id(value);
@@ -495,6 +557,113 @@ public class Elements {
         }
     }
 
+    /**
+     * Reads all rows of a table with a single javascript call
+     *
+     * @param selector String selector of the table element in format "page_name.element_name"
+     * @return rows as header =&gt; cell text maps in column order
+     */
+    public static List<Map<String, String>> scrapeTable(String selector) {
+        return scrapeTable(element(selector), null);
+    }
+
+    /**
+     * Reads all rows of a table, one javascript call per page
+     *
+     * @param selector           String selector of the table element in format "page_name.element_name"
+     * @param paginationSelector String selector of the pagination links, for example "home.pagination"
+     * @return rows of all pages as header =&gt; cell text maps in column order
+     */
+    public static List<Map<String, String>> scrapeTable(String selector, String paginationSelector) {
+        return scrapeTable(element(selector), element(paginationSelector));
+    }
+
+    /**
+     * Reads all rows of a table, one javascript call per page
+     * <p>
+     * Headers are the th cells of the table head, columns without a header are keyed "column_[n]".
+     * After each page the link following the active pagination link (or a "next" link) is clicked,
+     * until there is no such link or the page doesn't change.
+     * </p>
+     *
+     * @param table      By selector of the table element
+     * @param pagination By selector of the pagination links, null to read the current page only
+     * @return rows of all pages as header =&gt; cell text maps in column order
+     */
+    public static List<Map<String, String>> scrapeTable(By table, By pagination) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        Set<List<List<String>>> pages = new HashSet<>();
+        for (int page = 0; page < MAX_TABLE_PAGES; page++) {
+            TableText text = readTable(table);
+            if (!pages.add(text.rows)) {
+                break;
+            }
+            rows.addAll(text.toMaps());
+            if (pagination == null) {
+                break;
+            }
+            List<WebElement> links = findElements(pagination);
+            if (links == null || links.isEmpty()) {
+                break;
+            }
+            Object next = Navigate.execJavascript(NEXT_PAGE_SCRIPT, links);
+            if (!(next instanceof WebElement)) {
+                break;
+            }
+            Clicks.click((WebElement) next);
+            Wait.forPageReady();
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TableText readTable(By table) {
+        Object result = Navigate.execJavascript(TABLE_TEXT_SCRIPT, findElement(table));
+        TableText text = new TableText();
+        if (!(result instanceof Map)) {
+            return text;
+        }
+        Map<String, Object> json = (Map<String, Object>) result;
+        for (Object header : (List<Object>) json.get("headers")) {
+            text.headers.add(header == null ? "" : header.toString());
+        }
+        for (Object row : (List<Object>) json.get("rows")) {
+            List<String> cells = new ArrayList<>();
+            for (Object cell : (List<Object>) row) {
+                cells.add(cell == null ? "" : cell.toString());
+            }
+            text.rows.add(cells);
+        }
+        return text;
+    }
+
+    // headers and body cell texts of one table page
+    private static class TableText {
+        private final List<String> headers = new ArrayList<>();
+        private final List<List<String>> rows = new ArrayList<>();
+
+        private List<Map<String, String>> toMaps() {
+            List<String> keys = new ArrayList<>();
+            int columns = headers.size();
+            for (List<String> row : rows) {
+                columns = Math.max(columns, row.size());
+            }
+            for (int i = 0; i < columns; i++) {
+                String key = i < headers.size() && !headers.get(i).isEmpty() ? headers.get(i) : "column_" + (i + 1);
+                keys.add(keys.contains(key) ? key + "_" + (i + 1) : key);
+            }
+            List<Map<String, String>> maps = new ArrayList<>(rows.size());
+            for (List<String> row : rows) {
+                Map<String, String> map = new LinkedHashMap<>();
+                for (int i = 0; i < row.size(); i++) {
+                    map.put(keys.get(i), row.get(i));
+                }
+                maps.add(map);
+            }
+            return maps;
+        }
+    }
+
     public static void dragAndDropForHTML5(By draggable, By droppable) throws InterruptedException, AWTException {
         try {
             Wait.untilElementPresent(draggable);
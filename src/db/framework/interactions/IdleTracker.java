@@ -0,0 +1,136 @@
+package db.framework.interactions;
+
+import db.framework.runner.MainRunner;
+import db.framework.utils.Utils;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for the page to be idle using the idle_tracker.js instrumentation script
+ * <p>
+ * The script counts running XHR/fetch calls and keeps the time of the last network, DOM or animation
+ * activity. Waiting is done in the browser, one async script call resolves as soon as the page has been
+ * quiet for "idle_quiet_ms" milliseconds. Enabled with the "idle_tracker" env variable.
+ * </p>
+ */
+public class IdleTracker {
+
+    private static final boolean enabled = MainRunner.booleanParam("idle_tracker");
+    // longest time a single async script waits in the browser, stays below any script timeout we set
+    private static final long MAX_WAIT_PER_CALL = 9000;
+    // W3C default script timeout, used when WebDriverConfigurator leaves the driver's own value
+    private static final long DEFAULT_SCRIPT_TIMEOUT = 30;
+
+    private static final String WAIT_SCRIPT = "var quiet = arguments[0], budget = arguments[1];" +
+            "var done = arguments[arguments.length - 1];" +
+            "var start = new Date().getTime();" +
+            "(function check() {" +
+            "  var t = window.__dbIdleTracker, now = new Date().getTime();" +
+            "  var loaded = /complete|loaded|interactive/.test(document.readyState);" +
+            "  if (t && loaded && t.pending === 0 && now - t.lastActivity >= quiet) {" +
+            "    return done({idle: true, url: window.location.href});" +
+            "  }" +
+            "  if (now - start >= budget) {" +
+            "    return done({idle: false, url: window.location.href});" +
+            "  }" +
+            "  setTimeout(check, Math.min(50, quiet));" +
+            "})();";
+
+    private static String trackerScript;
+
+    /**
+     * Checks if page idle tracking is enabled
+     *
+     * @return true if "idle_tracker" env variable is true
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Installs the tracker on the current page. Does nothing if the tracker is already installed.
+     */
+    public static void inject() {
+        String script = getTrackerScript();
+        if (script != null) {
+            Navigate.execJavascript(script);
+        }
+    }
+
+    /**
+     * Waits until the page has been idle for "idle_quiet_ms", installing the tracker first if needed
+     *
+     * @param timeoutMillis max time to wait
+     * @return true if page became idle, false on timeout, null if the tracker can't be used on this page
+     */
+    public static Boolean awaitIdle(long timeoutMillis) {
+        String script = getTrackerScript();
+        if (script == null || !MainRunner.driverInitialized()) {
+            return null;
+        }
+        RemoteWebDriver driver = MainRunner.getWebDriver();
+        long quiet = MainRunner.timeouts().idleQuiet();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            driver.manage().timeouts().setScriptTimeout(MAX_WAIT_PER_CALL / 1000 + 5, TimeUnit.SECONDS);
+            while (true) {
+                long budget = Math.min(MAX_WAIT_PER_CALL, Math.max(0, deadline - System.currentTimeMillis()));
+                Object result = driver.executeAsyncScript(script + WAIT_SCRIPT, quiet, budget);
+                if (!(result instanceof Map)) {
+                    return null;
+                }
+                Map state = (Map) result;
+                MainRunner.setLastUrl((String) state.get("url"));
+                if (Boolean.TRUE.equals(state.get("idle"))) {
+                    return true;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            if (MainRunner.debugMode) {
+                System.err.println("-->IdleTracker: " + e.getMessage());
+            }
+            return null;
+        } finally {
+            restoreScriptTimeout(driver);
+        }
+    }
+
+    /**
+     * Puts back the script timeout the driver was configured with, selenium can't read it back
+     *
+     * @param driver driver to restore
+     */
+    private static void restoreScriptTimeout(RemoteWebDriver driver) {
+        long seconds = "Linux".equals(MainRunner.remoteOS) ? DEFAULT_SCRIPT_TIMEOUT : MainRunner.timeout;
+        try {
+            driver.manage().timeouts().setScriptTimeout(seconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            if (MainRunner.debugMode) {
+                System.err.println("-->IdleTracker: unable to restore script timeout: " + e.getMessage());
+            }
+        }
+    }
+
+    private static synchronized String getTrackerScript() {
+        if (trackerScript == null) {
+            File file = new File("src/db/framework/javascripts/idle_tracker.js");
+            if (!file.exists()) {
+                file = new File("db/framework/javascripts/idle_tracker.js");
+            }
+            try {
+                trackerScript = Utils.readTextFile(file);
+            } catch (IOException e) {
+                System.err.println("-->IdleTracker: unable to read " + file.getPath() + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return trackerScript;
+    }
+}
@@ -87,6 +87,9 @@ public class Navigate {
      */
     public static void runAfterNavigation() {
         afterNavigate.forEach(Runnable::run);
+        if (IdleTracker.enabled()) {
+            IdleTracker.inject();
+        }
         MainRunner.getCurrentUrl();
         MainRunner.PageHangWatchDog.resetWatchDog();
     }
@@ -119,11 +122,12 @@ public class Navigate {
     public static void browserBack() {
         if (StepUtils.safari() || StepUtils.ie()) {
             try {
-                int urlStackSize = MainRunner.URLStack.size();
+                ArrayList<String> urlStack = MainRunner.getURLStack();
+                int urlStackSize = urlStack.size();
                 if (urlStackSize <= 1) {
                     visit("home");
                 } else {
-                    MainRunner.getWebDriver().get(MainRunner.URLStack.get(urlStackSize - 2));
+                    MainRunner.getWebDriver().get(urlStack.get(urlStackSize - 2));
                 }
                 Utils.threadSleep(1000, null);
             } catch (Exception e) {
@@ -338,7 +342,7 @@ public class Navigate {
      * @param args   Any arguments to JS code in script
      * @return returned value of JS code (if any)
      */
-    public static synchronized Object execJavascript(String script, Object... args) {
+    public static Object execJavascript(String script, Object... args) {
         if (!MainRunner.driverInitialized()) {
             return "";
         }
@@ -1,6 +1,7 @@
 package db.framework.interactions;
 
 import db.framework.runner.MainRunner;
+import db.framework.utils.DBLog;
 import db.framework.utils.StepUtils;
 import db.framework.utils.Utils;
 import org.openqa.selenium.By;
@@ -12,10 +13,9 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BooleanSupplier;
 
-import static db.framework.utils.Utils.errLog;
-
 /**
  * A collection of ways to wait for expected conditions
  */
@@ -175,7 +175,7 @@ public class Wait {
                         Utils.listToString(Utils.getCallFromFunction("secondsUntilElementPresent"), "\n\t ", null) +
                         ": " + selector.toString());
             }
-            errLog.println(ex.getMessage());
+            DBLog.warn(ex.getMessage());
             return false;
         }
     }
@@ -210,7 +210,7 @@ public class Wait {
             if (MainRunner.debugMode) {
                 System.err.println("-->Error:secondsUntilElementNotPresent(): " + selector.toString());
             }
-            errLog.println(ex.getMessage());
+            DBLog.warn(ex.getMessage());
             return false;
         }
     }
@@ -276,7 +276,7 @@ public class Wait {
             if (MainRunner.debugMode) {
                 System.err.println("-->Error:untilElementPresentWithRefreshAndClick(): " + waitFor.toString() + ": " + toClick.toString());
             }
-            errLog.println(ex.getMessage());
+            DBLog.warn(ex.getMessage());
         }
     }
 
@@ -348,24 +348,53 @@ public class Wait {
      * @return true if page is loaded and pageName.verify_page element is loaded
      */
     public static boolean forPageReady(final String pageName) {
-
-        int waitTime = MainRunner.timeout;
+        // make sure driver is initialized
+        MainRunner.getWebDriver();
+        long deadline = System.currentTimeMillis() + MainRunner.timeout * 1000L;
+        long interval = MainRunner.timeouts().pageReadyPoll();
+        long maxInterval = MainRunner.timeouts().pageReadyMaxPoll();
+        Boolean idle = IdleTracker.enabled() ? IdleTracker.awaitIdle(MainRunner.timeout * 1000L) : null;
+        if (idle != null && !idle) {
+            if (MainRunner.debugMode) {
+                System.out.println("Timeout in forPageReady after " + MainRunner.timeout + " seconds");
+            }
+            return false;
+        }
         try {
-        new WebDriverWait(MainRunner.getWebDriver(), waitTime).until((WebDriver wDriver) -> {
+            // fall back to polling the page state when the idle tracker is disabled or can't run
+            while (idle == null) {
                 if (StepUtils.safari()) {
                     Utils.threadSleep(100, null);
                 }
-                return animationDone() && ajaxDone() && isPageLoaded();
-            });
-            } catch (Exception e) {
-                // IE likes to throw a lot of garbage exceptions, don't bother printing them out
-                if (MainRunner.debugMode && !StepUtils.ie() && !StepUtils.safari()) {
-                    System.out.println("Exception in forPageReady: ");
-                    System.err.println(e.getMessage());
+                PageState state = probe();
+                if (!state.isAvailable()) {
+                    // probe script failed, polling again won't tell us any more
+                    if (MainRunner.debugMode) {
+                        System.out.println("Unable to read page state in forPageReady");
+                    }
+                    return false;
+                }
+                if (state.isReady()) {
+                    break;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    if (MainRunner.debugMode) {
+                        System.out.println("Timeout in forPageReady after " + MainRunner.timeout + " seconds");
+                    }
+                    return false;
                 }
-                return false;
+                // back off so a slow page doesn't cost a remote round trip every few ms
+                Utils.threadSleep(interval, null);
+                interval = Math.min(interval * 2, maxInterval);
             }
-
+        } catch (Exception e) {
+            // IE likes to throw a lot of garbage exceptions, don't bother printing them out
+            if (MainRunner.debugMode && !StepUtils.ie() && !StepUtils.safari()) {
+                System.out.println("Exception in forPageReady: ");
+                System.err.println(e.getMessage());
+            }
+            return false;
+        }
 
         if (pageName != null) {
             By verifyElement = Elements.element(pageName + ".verify_page");
@@ -379,6 +408,19 @@ public class Wait {
         return true;
     }
 
+    /**
+     * Reads the loading state of the page in a single javascript call.
+     * Also records the current url so it doesn't need to be requested separately.
+     *
+     * @return state of the page
+     */
+    public static PageState probe() {
+        Object response = Navigate.execJavascript(PageState.SCRIPT, !StepUtils.safari());
+        PageState state = new PageState(response instanceof Map ? (Map) response : null);
+        MainRunner.setLastUrl(state.url);
+        return state;
+    }
+
     /**
      * Checks if any JQuery animations are currently running
      *
@@ -388,8 +430,7 @@ public class Wait {
         if (StepUtils.safari()) {
             return true;
         }
-        Object done = Navigate.execJavascript("return $(\":animated\").length == 0;");
-        return done instanceof Boolean ? (Boolean) done : true;
+        return probe().isAnimationDone();
     }
 
     /**
@@ -398,9 +439,7 @@ public class Wait {
      * @return true if page is loaded
      */
     public static boolean isPageLoaded() {
-        String state = (String) Navigate.execJavascript("return document.readyState;");
-        //System.out.print("." + ret);
-        return state.matches("complete|loaded|interactive");
+        return probe().isLoaded();
     }
 
     /**
@@ -410,23 +449,9 @@ public class Wait {
      */
     public static boolean ajaxDone() {
         StepUtils.ajaxCheck = true;
-        Utils.redirectSErr();
         try {
-
-            //below script returns either string or long value, so fetching the results conditionally to avoid type cast error
-            Object jsResponse = Navigate.execJavascript("return jQuery.active;");
-            Long queries;
-
-            if (jsResponse instanceof Long) {
-                queries = (Long) jsResponse;
-            } else {
-                System.err.println("Unable to get num ajax calls!");
-                return true;
-            }
-            MainRunner.getCurrentUrl();
-            return queries == 0;
+            return probe().isAjaxDone();
         } finally {
-            Utils.resetSErr();
             StepUtils.ajaxCheck = false;
         }
     }
@@ -450,6 +475,84 @@ public class Wait {
         untilElementNotPresent(selector);
     }
 
+    /**
+     * Loading state of the page as returned by {@link #probe()}
+     */
+    public static class PageState {
+        private static final String SCRIPT = "var jq = window.jQuery;" +
+                "var state = {state: document.readyState, url: window.location.href, ajax: -1, animated: 0};" +
+                "if (jq) {" +
+                "  state.ajax = typeof jq.active === 'number' ? jq.active : -1;" +
+                "  if (arguments[0]) { try { state.animated = jq(':animated').length; } catch (e) {} }" +
+                "}" +
+                "return state;";
+
+        private final boolean available;
+        private final String readyState;
+        private final String url;
+        private final long ajax;
+        private final long animated;
+
+        private PageState(Map state) {
+            if (state == null) {
+                // script failed, page is not in a state we can check
+                available = false;
+                readyState = "";
+                url = null;
+                ajax = 0;
+                animated = 0;
+                return;
+            }
+            available = true;
+            readyState = String.valueOf(state.get("state"));
+            url = state.get("url") == null ? null : state.get("url").toString();
+            ajax = state.get("ajax") instanceof Number ? ((Number) state.get("ajax")).longValue() : -1;
+            animated = state.get("animated") instanceof Number ? ((Number) state.get("animated")).longValue() : 0;
+        }
+
+        /**
+         * @return true if the probe script returned a page state
+         */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * @return true if the document ready state is no longer loading
+         */
+        public boolean isLoaded() {
+            return readyState.matches("complete|loaded|interactive");
+        }
+
+        /**
+         * @return true if no jQuery ajax calls are active or the page doesn't use jQuery
+         */
+        public boolean isAjaxDone() {
+            return ajax <= 0;
+        }
+
+        /**
+         * @return true if no jQuery animations are running
+         */
+        public boolean isAnimationDone() {
+            return animated == 0;
+        }
+
+        /**
+         * @return true if page is loaded with no ajax calls or animations running
+         */
+        public boolean isReady() {
+            return isAnimationDone() && isAjaxDone() && isLoaded();
+        }
+
+        /**
+         * @return url of the page, null if unknown
+         */
+        public String getUrl() {
+            return url;
+        }
+    }
+
     private static String getPageText() {
         try {
             return Navigate.execJavascript("return document.body.textContent").toString();
@@ -0,0 +1,75 @@
+/** track network and DOM activity of the page, used to wait until the page has been quiet for a while */
+(function () {
+    if (window.__dbIdleTracker) {
+        return;
+    }
+    var tracker = window.__dbIdleTracker = {pending: 0, lastActivity: new Date().getTime()};
+
+    function touch() {
+        tracker.lastActivity = new Date().getTime();
+    }
+
+    function start() {
+        tracker.pending++;
+        touch();
+    }
+
+    function end() {
+        tracker.pending = Math.max(0, tracker.pending - 1);
+        touch();
+    }
+
+    // ajax calls
+    if (window.XMLHttpRequest && window.XMLHttpRequest.prototype) {
+        var send = window.XMLHttpRequest.prototype.send;
+        window.XMLHttpRequest.prototype.send = function () {
+            var finished = false;
+            var finish = function () {
+                if (!finished) {
+                    finished = true;
+                    end();
+                }
+            };
+            start();
+            this.addEventListener('loadend', finish);
+            try {
+                return send.apply(this, arguments);
+            } catch (e) {
+                finish();
+                throw e;
+            }
+        };
+    }
+
+    // fetch calls
+    if (window.fetch) {
+        var fetch = window.fetch;
+        window.fetch = function () {
+            start();
+            try {
+                return fetch.apply(this, arguments).then(function (response) {
+                    end();
+                    return response;
+                }, function (error) {
+                    end();
+                    throw error;
+                });
+            } catch (e) {
+                end();
+                throw e;
+            }
+        };
+    }
+
+    // DOM changes, this includes style changes made by javascript animations
+    if (window.MutationObserver && document.documentElement) {
+        new MutationObserver(touch).observe(document.documentElement,
+            {childList: true, subtree: true, attributes: true, characterData: true});
+    }
+
+    // css animations and transitions
+    var events = ['animationstart', 'animationend', 'transitionstart', 'transitionend'];
+    for (var i = 0; i < events.length; i++) {
+        document.addEventListener(events[i], touch, true);
+    }
+})();
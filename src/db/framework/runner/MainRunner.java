@@ -1,10 +1,14 @@
 package db.framework.runner;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import cucumber.api.cli.Main;
 import db.framework.interactions.Navigate;
 import db.framework.interactions.Wait;
+import db.framework.utils.CucumberJsonMerger;
+import db.framework.utils.FeatureCache;
+import db.framework.utils.ImpactRecorder;
+import db.framework.utils.LocatorIndex;
+import db.framework.utils.LockService;
+import db.framework.utils.PageUtils;
 import db.framework.utils.StepUtils;
 import db.framework.utils.Utils;
 import org.apache.commons.lang3.StringUtils;
@@ -19,7 +23,15 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 import java.io.File;
 import java.io.IOException;
 import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static db.framework.utils.EnvironmentVariableRetriever.*;
@@ -127,17 +139,74 @@ public class MainRunner {
     public static int timeout; // set the general default timeout to 30 seconds
 
     /**
-     * List containing URL's that have been visited
+     * Number of parallel workers as given in "workers" env variable. Default 1 (single cucumber thread)
      */
-    public static ArrayList<String> URLStack = new ArrayList<>();
+    public static int workers = Math.max(1, Utils.parseInt(getEnvOrExParam("workers"), 1));
 
+    /**
+     * Number of shards the run is split into as given in "shard_total" env variable, one JVM or host per shard.
+     * Default 1 (no sharding)
+     */
+    public static int shardTotal = Math.max(1, Utils.parseInt(getEnvOrExParam("shard_total"), 1));
+
+    /**
+     * Shard run by this JVM as given in "shard_index" env variable, from 0 to shard_total - 1
+     */
+    public static int shardIndex = Utils.parseInt(getEnvOrExParam("shard_index"), 0);
+
+    /**
+     * Order scenarios run in as given in "run_order" env variable: "flaky_first" runs the scenarios that
+     * failed most in recent runs first. Default: feature file order
+     */
+    public static String runOrder = getEnvOrExParam("run_order");
+
+    /**
+     * Number of failed scenarios after which the remaining ones are skipped, as given in "max_failures"
+     * env variable. Default 0 (run everything)
+     */
+    public static int maxFailures = Math.max(0, Utils.parseInt(getEnvOrExParam("max_failures"), 0));
+
+    private static final AtomicInteger failedScenarios = new AtomicInteger();
+
+    /**
+     * Number of times the failed scenarios are run again at the end of the run, on new browsers, as given in
+     * "retry_count" env variable. Default 0 (no retry)
+     */
+    public static int retryCount = Math.max(0, Utils.parseInt(getEnvOrExParam("retry_count"), 0));
+
+    /**
+     * Most failed scenarios that are retried as given in "retry_max" env variable. More failures than that are
+     * not flakes, so nothing is retried. Default 10, 0 for no limit
+     */
+    public static int retryMax = Math.max(0, Utils.parseInt(getEnvOrExParam("retry_max"), 10));
+
+    /**
+     * Git ref given in "impact_base" env variable: only the scenarios affected by the changes since this ref
+     * are run, as recorded by {@link ImpactRecorder}. Default: run all scenarios
+     */
+    public static String impactBase = getEnvOrExParam("impact_base");
+
+    /**
+     * Retry round being run, 0 for the first run
+     */
+    static volatile int retryRound = 0;
+
+    /**
+     * Driver slot of the current worker. Threads started by a worker (the cucumber thread, watchdog helpers)
+     * share the slot of their parent, parallel workers bind their own with {@link #bindWorker(int)}.
+     */
+    private static final InheritableThreadLocal<DriverSlot> driverSlot = new InheritableThreadLocal<DriverSlot>() {
+        @Override
+        protected DriverSlot initialValue() {
+            return new DriverSlot(0);
+        }
+    };
 
     /**
-     * The current URL
+     * Partial cucumber.json files written by parallel workers, merged once all workers are done
      */
-    public static String currentURL = "";
+    private static final List<File> resultParts = Collections.synchronizedList(new ArrayList<>());
 
-    private static RemoteWebDriver driver = null;
     private static long ieAuthenticationTs = System.currentTimeMillis() - 10000; // set authentication checking interval out of range
 
     /**
@@ -155,6 +224,26 @@ public class MainRunner {
             throw new Exception("Error getting scenarios");
         }
 
+        if (shardTotal > 1 || StringUtils.isNotEmpty(impactBase)) {
+            if (shardIndex < 0 || shardIndex >= shardTotal) {
+                Assert.fail("shard_index must be between 0 and " + (shardTotal - 1) + ": " + shardIndex);
+            }
+            List<String> shardScenarios = ParallelExecutor.selectScenarios();
+            if (shardTotal > 1) {
+                System.out.println("Shard " + shardIndex + " of " + shardTotal + ": " + shardScenarios.size() + " scenarios");
+            }
+            if (shardScenarios.isEmpty()) {
+                // cucumber would run every scenario without feature paths
+                runStatus = 0;
+                if (argv != null) {
+                    System.exit(runStatus);
+                }
+                return;
+            }
+            featureScenarios.clear();
+            featureScenarios.addAll(ParallelExecutor.condense(shardScenarios));
+        }
+
         // add any tags
         if ((tags == null || tags.isEmpty())) {
             Assert.fail("Tags are not defined");
@@ -198,14 +287,35 @@ public class MainRunner {
         featureScenarios.add("html:logs");
 
         System.out.println("Browser Version:" + browserVersion);
-        driver = getWebDriver();
+        LocatorIndex.build();
+        if (booleanParam("page_hot_reload")) {
+            PageUtils.watchElementDirs();
+        }
+        WebDriverPool.warmUp();
+        // flaky first runs go through the scheduler even with one worker: cucumber sorts features by path
+        boolean scheduled = workers > 1 || flakyFirst();
+        if (!scheduled) {
+            getWebDriver();
+        } else {
+            System.out.println("Parallel workers: " + workers + (flakyFirst() ? ", flaky scenarios first" : ""));
+        }
+        if (maxFailures > 0) {
+            System.out.println("Skipping remaining scenarios after " + maxFailures + " failures");
+        }
 
         try {
             Thread cucumberThread = new Thread(() -> {
                 int status = 1;
                 try {
-                    status = Main.run(featureScenarios.toArray(new String[featureScenarios.size()]),
-                            Thread.currentThread().getContextClassLoader());
+                    if (scheduled) {
+                        status = new ParallelExecutor(workers).run(featureScenarios);
+                    } else {
+                        status = Main.run(featureScenarios.toArray(new String[featureScenarios.size()]),
+                                Thread.currentThread().getContextClassLoader());
+                    }
+                    if (status != 0 && retryCount > 0) {
+                        status = retryFailedScenarios(featureScenarios);
+                    }
                 } catch (IOException e) {
                     System.err.println("IOException in cucumber run");
                 } finally {
@@ -220,13 +330,98 @@ public class MainRunner {
             e.printStackTrace();
             runStatus = 1;
         } finally {
+            mergeResultParts();
+            ScenarioTimings.update(runResultFile());
+            RunHistory.update(runResultFile());
+            ImpactRecorder.save();
             close();
+            System.out.println(PageUtils.getPageCache().stats());
+            String lockStats = LockService.stats();
+            if (!lockStats.isEmpty()) {
+                System.out.println(lockStats);
+            }
             if (argv != null) {
                 System.exit(runStatus);
             }
         }
     }
 
+    /**
+     * Runs the failed scenarios again on new browsers, up to retry_count times. The results of each retry are
+     * merged into the result file of the run, where the scenarios that passed get the
+     * {@value CucumberJsonMerger#PASSED_ON_RETRY} tag.
+     *
+     * @param cucumberArgs arguments of the run
+     * @return status of the last retry, 1 if the failed scenarios were not retried
+     */
+    private static int retryFailedScenarios(List<String> cucumberArgs) {
+        mergeResultParts();
+        resultParts.clear();
+        int status = 1;
+        for (int round = 1; round <= retryCount; round++) {
+            if (failureLimitReached()) {
+                System.out.println("Not retrying failed scenarios: max_failures reached");
+                return status;
+            }
+            List<String> failed = new ArrayList<>();
+            ScenarioAverages.readResults(runResultFile(), (scenario, result, millis) -> {
+                if (result == ScenarioAverages.Status.FAILED) {
+                    failed.add(scenario);
+                }
+            });
+            if (failed.isEmpty()) {
+                return status;
+            }
+            if (retryMax > 0 && failed.size() > retryMax) {
+                System.err.println("-->Not retrying " + failed.size() + " failed scenarios, more than retry_max " + retryMax);
+                return status;
+            }
+            System.out.println("Retry " + round + " of " + retryCount + ": " + failed.size() + " failed scenarios");
+            // the results so far become the first part of the merge, the retried scenarios replace their failed runs
+            File previous = new File(logs + "cucumber-before-retry.json");
+            try {
+                Files.move(runResultFile().toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("-->Unable to keep results before retry: " + e.getMessage());
+                return status;
+            }
+            resultParts.add(previous);
+            retryRound = round;
+            WebDriverPool.isolate();
+            status = new ParallelExecutor(workers).run(cucumberArgs, failed);
+            mergeResultParts();
+            resultParts.clear();
+            if (status == 0) {
+                break;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @return true if the run_order is "flaky_first"
+     */
+    public static boolean flakyFirst() {
+        return "flaky_first".equalsIgnoreCase(runOrder);
+    }
+
+    /**
+     * Counts a failed scenario toward max_failures
+     */
+    public static void scenarioFailed() {
+        int failed = failedScenarios.incrementAndGet();
+        if (maxFailures > 0 && failed == maxFailures) {
+            System.err.println("-->" + failed + " scenarios failed, skipping the remaining scenarios (max_failures)");
+        }
+    }
+
+    /**
+     * @return true if max_failures scenarios failed and the remaining ones should be skipped
+     */
+    public static boolean failureLimitReached() {
+        return maxFailures > 0 && failedScenarios.get() >= maxFailures;
+    }
+
     public static Timeouts timeouts() {
         return Timeouts.instance();
     }
@@ -301,19 +496,30 @@ public class MainRunner {
      * @param quit whether to close the driver
      */
     public static void resetDriver(boolean quit) {
+        DriverSlot slot = driverSlot.get();
+        if (WebDriverPool.enabled() && slot.driver != null) {
+            // pooled drivers are sanitized and reused instead of quit
+            if (quit) {
+                WebDriverPool.release(slot.driver);
+            } else {
+                WebDriverPool.detach(slot.driver);
+            }
+            slot.driver = null;
+            return;
+        }
         try {
             if (quit) {
-                driver.quit();
+                slot.driver.quit();
                 System.out.println("driver quit");
                 if (ie()) { // workaround for IE browser closing
-                    driver.quit();
+                    slot.driver.quit();
                 }
             }
-            driver = null;
+            slot.driver = null;
             System.out.println("driver set to null");
         } catch (Exception e) {
             System.err.println("error in resetDriver : " + e.getMessage());
-            driver = null;
+            slot.driver = null;
             System.out.println("driver set to null in catch");
         }
     }
@@ -324,7 +530,7 @@ public class MainRunner {
      * @return true if a valid web driver is active
      */
     public static Boolean driverInitialized() {
-        return driver != null;
+        return driverSlot.get().driver != null;
     }
 
     /**
@@ -332,17 +538,30 @@ public class MainRunner {
      *
      * @return current RemoteWebDriver instance
      */
-    public static synchronized RemoteWebDriver getWebDriver() {
-        if (URLStack.size() == 0) {
-            URLStack.add(url);
-        }
-        if (driver != null) {
-            if (!URLStack.get(URLStack.size() - 1).equals(currentURL)) {
-                URLStack.add(currentURL);
+    public static RemoteWebDriver getWebDriver() {
+        DriverSlot slot = driverSlot.get();
+        synchronized (slot) {
+            if (slot.urlStack.size() == 0) {
+                slot.urlStack.add(url);
             }
-            return driver;
+            if (slot.driver != null) {
+                if (!slot.urlStack.get(slot.urlStack.size() - 1).equals(slot.currentURL)) {
+                    slot.urlStack.add(slot.currentURL);
+                }
+                return slot.driver;
+            }
+            slot.driver = WebDriverPool.enabled() ? WebDriverPool.acquire() : launchDriver();
+            return slot.driver;
         }
+    }
 
+    /**
+     * Starts a new browser and sizes its window
+     *
+     * @return newly started RemoteWebDriver instance
+     */
+    static RemoteWebDriver launchDriver() {
+        RemoteWebDriver driver = null;
         for (int i = 0; i < 2; i++) {
             driver = WebDriverConfigurator.initDriver(null);
             try {
@@ -371,6 +590,114 @@ public class MainRunner {
         return new ChromeDriver();
     }
 
+    /**
+     * Gets the list of URL's visited by the current worker
+     *
+     * @return list of visited URL's
+     */
+    public static ArrayList<String> getURLStack() {
+        return driverSlot.get().urlStack;
+    }
+
+    /**
+     * Clears the list of URL's visited by the current worker
+     */
+    public static void resetURLStack() {
+        driverSlot.get().urlStack = new ArrayList<>();
+    }
+
+    /**
+     * Gets the last URL seen by the current worker without asking the browser
+     *
+     * @return last known url
+     */
+    public static String getLastUrl() {
+        return driverSlot.get().currentURL;
+    }
+
+    /**
+     * Records the URL the browser of the current worker is on, when it's known without asking the driver
+     *
+     * @param url url the browser is on
+     */
+    public static void setLastUrl(String url) {
+        if (url != null) {
+            driverSlot.get().currentURL = url;
+        }
+    }
+
+    /**
+     * Gets the index of the worker running on the current thread
+     *
+     * @return worker index, 0 when not running in parallel
+     */
+    public static int workerIndex() {
+        return driverSlot.get().worker;
+    }
+
+    /**
+     * Binds a fresh driver slot to the current thread. Used by parallel workers so each one owns its browser.
+     *
+     * @param worker index of the worker (1 based)
+     */
+    static void bindWorker(int worker) {
+        driverSlot.set(new DriverSlot(worker));
+    }
+
+    /**
+     * Quits the browser owned by the current worker, if any
+     */
+    static void releaseWorker() {
+        if (driverInitialized()) {
+            resetDriver(true);
+        }
+    }
+
+    /**
+     * Gets the file the cucumber results of the current worker should be written to
+     *
+     * @return result file of the run, or a per-worker part file when running in parallel
+     */
+    public static File resultFile() {
+        int worker = workerIndex();
+        if (worker == 0) {
+            return runResultFile();
+        }
+        // a worker runs cucumber once per batch of scenarios, each run writes its own part
+        DriverSlot slot = driverSlot.get();
+        File part = new File(logs + (retryRound > 0 ? "cucumber-retry-" + retryRound + "-" : "cucumber-") + "worker-" +
+                worker + "-" + (++slot.results) + ".json");
+        resultParts.add(part);
+        return part;
+    }
+
+    /**
+     * Gets the result file of this run
+     *
+     * @return logs/cucumber.json, or logs/cucumber-shard-N.json when the run is sharded
+     */
+    private static File runResultFile() {
+        return new File(logs + (shardTotal > 1 ? "cucumber-shard-" + shardIndex + ".json" : "cucumber.json"));
+    }
+
+    /**
+     * Merges the result files of all parallel workers into the result file of the run
+     */
+    private static void mergeResultParts() {
+        ArrayList<File> parts;
+        synchronized (resultParts) {
+            parts = new ArrayList<>(resultParts);
+        }
+        if (parts.isEmpty()) {
+            return;
+        }
+        try {
+            CucumberJsonMerger.merge(parts, runResultFile());
+        } catch (IOException e) {
+            System.err.println("-->Unable to merge worker results: " + e.getMessage());
+        }
+    }
+
     /**
      * Retrieves a parameter value from "ex_params" environment variable
      *
@@ -474,33 +801,34 @@ public class MainRunner {
         }
 
         Collections.sort(scenarioList);
-        ArrayList<Map> featureScenarios = null;
         String workSpace = getExParam("WORKSPACE");
         if (workSpace == null)
             workSpace = "";
+        ArrayList<String> paths = new ArrayList<>();
         for (String featureFilePath : scenarioList) {
-            String[] featureInfo = featureFilePath.split(".feature:");
-            String path = featureInfo[0];
+            String path = featureFilePath.split(".feature:")[0];
             if (!path.endsWith(".feature"))
                 path += ".feature";
-            int line = 0;
-            if (featureInfo.length == 2)
-                line = Utils.parseInt(featureInfo[1], 0);
             if (!path.equals("")) {
                 File featureFile = new File(path);
                 if (!(featureFile.exists() || featureFile.getAbsoluteFile().exists())) {
                     System.out.println("File not found: " + path);
                     path = workSpace + "/" + path;
                 }
-                String json = Utils.gherkinToJson(false, path);
-                try {
-                    featureScenarios = new Gson().fromJson(json, ArrayList.class);
-                } catch (JsonSyntaxException jex) {
-                    System.err.println("--> Failed to parse : " + path);
-                    System.err.println("--> json :\n\n" + json);
-                    System.err.println();
-                    throw jex;
-                }
+            }
+            paths.add(path);
+        }
+        // parsed features come from target/gherkin-cache unless the feature changed
+        Map<String, ArrayList<Map>> parsed = FeatureCache.loadAll(paths);
+        ArrayList<Map> featureScenarios = null;
+        for (int j = 0; j < scenarioList.size(); j++) {
+            String[] featureInfo = scenarioList.get(j).split(".feature:");
+            String path = paths.get(j);
+            int line = 0;
+            if (featureInfo.length == 2)
+                line = Utils.parseInt(featureInfo[1], 0);
+            if (!path.equals("")) {
+                featureScenarios = parsed.get(path);
             }
             findScenario(featureScenarios, path, line);
         }
@@ -552,6 +880,7 @@ public class MainRunner {
 
     public static boolean isAlertPresent() {
         boolean foundAlert;
+        RemoteWebDriver driver = driverSlot.get().driver;
         WebDriverWait wait = new WebDriverWait(driver, 10);
         try {
             wait.until(ExpectedConditions.alertIsPresent());
@@ -564,6 +893,7 @@ public class MainRunner {
     }
 
     public static void closeAlert() {
+        RemoteWebDriver driver = driverSlot.get().driver;
         if (driver != null) {
             driver.switchTo().alert().accept();
             Assert.assertFalse("Alert is still present", isAlertPresent());
@@ -576,6 +906,7 @@ public class MainRunner {
             ArrayList<Map> elements = (ArrayList<Map>) scenario.get("elements");
             for (Map element : elements) {
                 element.put("uri", scenario.get("uri"));
+                element.put("feature_tags", scenario.get("tags"));
                 int l = Utils.parseInt(element.get("line"), 0);
                 if (line == 0 || line == l) {
                     features.put(scenarioPath + ":" + l, element);
@@ -604,6 +935,19 @@ public class MainRunner {
      * Close Currently Running RemoteWebDriver Instance
      */
     public static void close() {
+        DriverSlot slot = driverSlot.get();
+        RemoteWebDriver driver = slot.driver;
+        if (WebDriverPool.enabled()) {
+            if (driver != null && useSauceLabs) {
+                System.out.println("Link to your job: https://saucelabs.com/jobs/" + driver.getSessionId());
+            }
+            resetDriver(true);
+            WebDriverPool.shutdown();
+            return;
+        }
+        if (driver == null) {
+            return;
+        }
         if (useSauceLabs) {
             if (driver instanceof RemoteWebDriver) {
                 System.out.println("Link to your job: https://saucelabs.com/jobs/" + (driver).getSessionId());
@@ -621,7 +965,7 @@ public class MainRunner {
             driver.quit();
         }
         driver.quit();
-        driver = null;
+        slot.driver = null;
     }
 
     /**
@@ -633,8 +977,9 @@ public class MainRunner {
         if (!driverInitialized()) {
             return url;
         }
-        String curUrl = driver.getCurrentUrl();
-        currentURL = curUrl;
+        DriverSlot slot = driverSlot.get();
+        String curUrl = slot.driver.getCurrentUrl();
+        slot.currentURL = curUrl;
         return curUrl;
     }
 
@@ -706,100 +1051,196 @@ public class MainRunner {
         return 1;
     }
 
-    public static class PageHangWatchDog extends Thread {
+    /**
+     * Browser and navigation state owned by one worker
+     */
+    static class DriverSlot {
+        final int worker;
+        RemoteWebDriver driver;
+        int results;
+        String currentURL = "";
+        ArrayList<String> urlStack = new ArrayList<>();
+
+        DriverSlot(int worker) {
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * Detects workers stuck on a page
+     * <p>
+     * Every worker has a record with the time of its last progress, updated by the navigation and step hooks.
+     * A scheduled check looks at the records every few seconds without talking to the browsers: a worker
+     * without progress for the timeout gets its page load stopped, and after too many timeouts in a row its
+     * thread is interrupted. Other workers are not affected.
+     * </p>
+     */
+    public static class PageHangWatchDog {
         private final static long TIMEOUT = (StepUtils.safari() || StepUtils.ie() ? 130 : 95) * 1000;
+        private final static long CHECK_PERIOD = 5000;
         private final static int MAX_FAILURES = 5;
-        private static Thread cucumberThread;
-        private static PageHangWatchDog hangWatchDog;
-        private static int failCount;
-        private static boolean pause;
-        private String currentUrl;
-        private long ts;
+        private static final Map<Thread, WorkerRecord> records = new ConcurrentHashMap<>();
+        private static ScheduledExecutorService scheduler;
+        private static ExecutorService helpers;
 
         private PageHangWatchDog() {
-            System.err.println("--> Start:PageHangWatchDog:" + new Date());
-            this.reset(getWebDriver().getCurrentUrl());
-            this.setDaemon(true);
-            this.start();
         }
 
-        public static void init(Thread t) {
-            if (hangWatchDog == null) {
-                hangWatchDog = new PageHangWatchDog();
-                cucumberThread = t;
+        /**
+         * Starts watching a worker thread
+         *
+         * @param t thread running the scenarios of one worker
+         */
+        public static synchronized void init(Thread t) {
+            if (scheduler == null) {
+                System.err.println("--> Start:PageHangWatchDog:" + new Date());
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "page-hang-watchdog"));
+                helpers = Executors.newCachedThreadPool(r -> daemon(r, "page-hang-helper"));
+                scheduler.scheduleWithFixedDelay(PageHangWatchDog::check, CHECK_PERIOD, CHECK_PERIOD, TimeUnit.MILLISECONDS);
             }
+            records.putIfAbsent(t, new WorkerRecord(t));
         }
 
+        /**
+         * Stops watching a worker thread
+         *
+         * @param t thread given to {@link #init(Thread)}
+         */
+        public static void remove(Thread t) {
+            records.remove(t);
+        }
+
+        /**
+         * Records progress of the current worker after a navigation
+         */
         public static void resetWatchDog() {
-            hangWatchDog.reset(null);
+            WorkerRecord record = current();
+            if (record != null) {
+                String url = getLastUrl();
+                if (url != null && !url.equals(record.url)) {
+                    record.url = url;
+                    record.failCount = 0;
+                }
+                record.lastProgress = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * Records progress of the current worker, for example a finished step
+         */
+        public static void progress() {
+            WorkerRecord record = current();
+            if (record != null) {
+                record.failCount = 0;
+                record.lastProgress = System.currentTimeMillis();
+            }
         }
 
+        /**
+         * Pauses or resumes hang detection for the current worker
+         *
+         * @param pause true to pause
+         */
         public static void pause(boolean pause) {
-            PageHangWatchDog.pause = pause;
-            if (!pause) {
-                failCount = 0;
+            WorkerRecord record = current();
+            if (record != null) {
+                record.paused = pause;
+                record.lastProgress = System.currentTimeMillis();
+                if (!pause) {
+                    record.failCount = 0;
+                }
             }
         }
 
-        private void reset(String url) {
-            this.ts = System.currentTimeMillis();
-            if (url != null) {
-                this.currentUrl = url;
-                failCount = 0;
+        // record of the current thread, binding it to the thread's driver slot on first use
+        private static WorkerRecord current() {
+            WorkerRecord record = records.get(Thread.currentThread());
+            if (record != null && record.slot == null) {
+                record.slot = driverSlot.get();
             }
+            return record;
         }
 
-        public void run() {
-            while (cucumberThread.isAlive()) {
+        private static void check() {
+            long now = System.currentTimeMillis();
+            for (WorkerRecord record : records.values()) {
                 try {
-                    if (!driverInitialized()) {
+                    if (!record.thread.isAlive()) {
+                        records.remove(record.thread, record);
+                        continue;
+                    }
+                    DriverSlot slot = record.slot;
+                    if (slot == null || slot.driver == null || now - record.lastProgress <= TIMEOUT) {
                         continue;
-                    } else if (pause) {
-                        // if we've been waiting a while, send any browser command to prevent
-                        // dropping the sauce labs connection
-                        if (System.currentTimeMillis() - this.ts > TIMEOUT) {
-                            getWebDriver().getCurrentUrl();
-                            this.reset(this.currentUrl);
+                    }
+                    record.lastProgress = now;
+                    if (record.paused) {
+                        // send a browser command now and then to prevent dropping the sauce labs connection
+                        if (useSauceLabs) {
+                            runWithSlot(slot, () -> getWebDriver().getCurrentUrl());
                         }
                         continue;
                     }
-                    String url = currentURL;
-                    //System.err.println("Watchdog tick:\n>old url: " + this.currentUrl + "\n>new url: " + url);
-                    if (url.contains("about:blank")) {
+                    if (slot.currentURL.contains("about:blank")) {
                         continue;
                     }
-                    if (url.equals(this.currentUrl)) {
-                        if(System.currentTimeMillis() - this.ts > TIMEOUT) {
-                            System.err.println("--> PageHangWatchDog: timeout at " + this.currentUrl +
-                                    ", " + (MAX_FAILURES - failCount) + " failures until exit");
-                            failCount++;
-                            new Thread(() -> {
-                                try {
-                                    stopPageLoad();
-                                } catch (Exception e) {
-                                    // sometimes IE fails to run js. Continue running.
-                                } finally {
-                                    if (StepUtils.ie())
-                                        Navigate.browserRefresh();
-                                }
-                            }).start();
-
-                            this.reset(null);
-                            if (failCount > MAX_FAILURES) {
-                                System.err.println("PageHangWatchDog timeout! Pushing things along...");
-                                cucumberThread.interrupt();
-                                this.reset(null);
-                            }
+                    record.failCount++;
+                    System.err.println("--> PageHangWatchDog: timeout at " + slot.currentURL + " on " + record.thread.getName() +
+                            ", " + (MAX_FAILURES - record.failCount) + " failures until exit");
+                    runWithSlot(slot, () -> {
+                        try {
+                            stopPageLoad();
+                        } catch (Exception e) {
+                            // sometimes IE fails to run js. Continue running.
+                        } finally {
+                            if (StepUtils.ie())
+                                Navigate.browserRefresh();
                         }
-                    } else {
-                        this.reset(url);
+                    });
+                    if (record.failCount > MAX_FAILURES) {
+                        System.err.println("PageHangWatchDog timeout! Pushing " + record.thread.getName() + " along...");
+                        record.thread.interrupt();
                     }
                 } catch (Throwable ex) {
                     System.err.println("--> Error:PageHangWatchDog:" + ex.getMessage());
                     ex.printStackTrace();
+                }
+            }
+        }
+
+        // runs a browser command for a worker on a helper thread so a hung browser can't block the checks
+        private static void runWithSlot(DriverSlot slot, Runnable task) {
+            helpers.execute(() -> {
+                driverSlot.set(slot);
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    System.err.println("--> Error:PageHangWatchDog:" + e.getMessage());
                 } finally {
-                    Utils.threadSleep(5000, this.getClass().getSimpleName());
+                    driverSlot.remove();
                 }
+            });
+        }
+
+        private static Thread daemon(Runnable r, String name) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        /**
+         * Progress of one worker thread
+         */
+        private static class WorkerRecord {
+            private final Thread thread;
+            private volatile DriverSlot slot;
+            private volatile long lastProgress = System.currentTimeMillis();
+            private volatile String url;
+            private volatile int failCount;
+            private volatile boolean paused;
+
+            private WorkerRecord(Thread thread) {
+                this.thread = thread;
             }
         }
     }
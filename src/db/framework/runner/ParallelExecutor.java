@@ -0,0 +1,366 @@
+package db.framework.runner;
+
+import cucumber.runtime.RuntimeOptions;
+import cucumber.runtime.formatter.PluginFactory;
+import cucumber.runtime.io.MultiLoader;
+import cucumber.runtime.io.ResourceLoader;
+import cucumber.runtime.io.ResourceLoaderClassFinder;
+import db.framework.utils.ImpactRecorder;
+import db.framework.utils.Utils;
+import gherkin.TagExpression;
+import gherkin.formatter.Formatter;
+import gherkin.formatter.Reporter;
+import gherkin.formatter.model.*;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Runs the selected scenarios on several workers at once. Every worker owns its own browser
+ * and cucumber runtime and writes its results to its own file, which are merged when the run ends.
+ */
+class ParallelExecutor {
+
+    private static List<String> selection;
+
+    private final int workers;
+
+    /**
+     * Creates an executor
+     *
+     * @param workers number of workers to run scenarios on
+     */
+    ParallelExecutor(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Runs the scenarios on the workers, longest first as planned by {@link ScenarioScheduler}. Each worker
+     * runs cucumber once per batch of scenarios it takes from the scheduler and writes one HTML report to
+     * logs/html-worker-N covering all its batches.
+     *
+     * @param cucumberArgs arguments as built for a single cucumber run: feature paths followed by options
+     * @return 0 if all workers passed, otherwise the first non zero worker status
+     */
+    int run(List<String> cucumberArgs) {
+        List<String> scenarios = selectScenarios();
+        if (scenarios.isEmpty()) {
+            System.out.println("No scenarios matched for parallel run");
+            return 0;
+        }
+        return run(cucumberArgs, scenarios);
+    }
+
+    /**
+     * Runs the given scenarios on the workers
+     *
+     * @param cucumberArgs arguments as built for a single cucumber run: feature paths followed by options
+     * @param scenarios    scenario locations "path:line" to run instead of the feature paths
+     * @return 0 if all workers passed, otherwise the first non zero worker status
+     */
+    int run(List<String> cucumberArgs, List<String> scenarios) {
+        int optionsStart = cucumberArgs.indexOf("--tags");
+        if (optionsStart == -1) {
+            optionsStart = cucumberArgs.indexOf("--glue");
+        }
+        List<String> options = new ArrayList<>(cucumberArgs.subList(optionsStart, cucumberArgs.size()));
+        String htmlDir = "html:logs/html-" + (MainRunner.retryRound > 0 ? "retry-" + MainRunner.retryRound + "-" : "") + "worker-";
+        // the html report is shared by the batches of a worker instead of being a cucumber option
+        int htmlIndex = options.indexOf("html:logs");
+        boolean html = htmlIndex > 0;
+        if (html) {
+            options.subList(htmlIndex - 1, htmlIndex + 1).clear();
+        }
+        int count = Math.min(workers, scenarios.size());
+        ScenarioTimings timings = ScenarioTimings.load();
+        System.out.println("Scheduling " + scenarios.size() + " scenarios on " + count + " workers, " +
+                scenarios.stream().filter(timings::isKnown).count() + " with known durations");
+        ScenarioScheduler scheduler = new ScenarioScheduler(scenarios, count, timings,
+                MainRunner.flakyFirst() ? RunHistory.load() : null);
+
+        final int[] status = new int[count];
+        final int[] ran = new int[count];
+        final long[] busy = new long[count];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int worker = i + 1;
+            Thread thread = new Thread(() -> {
+                MainRunner.bindWorker(worker);
+                MainRunner.PageHangWatchDog.init(Thread.currentThread());
+                WorkerReport report = null;
+                try {
+                    if (html) {
+                        report = new WorkerReport(htmlDir + worker);
+                    }
+                    List<String> batch;
+                    while (!(batch = scheduler.next(worker - 1)).isEmpty()) {
+                        ArrayList<String> args = new ArrayList<>(condense(batch));
+                        args.addAll(options);
+                        long start = System.currentTimeMillis();
+                        try {
+                            int batchStatus = runCucumber(args, report);
+                            if (status[worker - 1] == 0) {
+                                status[worker - 1] = batchStatus;
+                            }
+                        } catch (Throwable e) {
+                            System.err.println("-->Worker " + worker + " failed: " + e.getMessage());
+                            status[worker - 1] = 1;
+                        }
+                        busy[worker - 1] += System.currentTimeMillis() - start;
+                        ran[worker - 1] += batch.size();
+                    }
+                } finally {
+                    if (report != null) {
+                        report.finish();
+                    }
+                    MainRunner.PageHangWatchDog.remove(Thread.currentThread());
+                    MainRunner.releaseWorker();
+                }
+            }, "cucumber-worker-" + worker);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                threads.forEach(Thread::interrupt);
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+        }
+        long total = 0;
+        long slowest = 0;
+        for (int i = 0; i < count; i++) {
+            System.out.println("Worker " + (i + 1) + ": " + ran[i] + " scenarios (" + scheduler.stolen(i) + " stolen) in " +
+                    Utils.toDuration(busy[i]));
+            total += busy[i];
+            slowest = Math.max(slowest, busy[i]);
+        }
+        if (total > 0) {
+            System.out.println(String.format("Slowest worker took %.1f%% longer than the average", 100.0 * (slowest * count - total) / total));
+        }
+        for (int s : status) {
+            if (s != 0) {
+                return s;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Runs cucumber like {@link cucumber.api.cli.Main#run(String[], ClassLoader)}, adding the worker's report
+     *
+     * @param args   feature paths followed by options
+     * @param report HTML report of the worker, null for none
+     * @return cucumber exit status
+     * @throws IOException if the features can't be read
+     */
+    private static int runCucumber(List<String> args, WorkerReport report) throws IOException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        RuntimeOptions runtimeOptions = new RuntimeOptions(new ArrayList<>(args));
+        if (report != null) {
+            runtimeOptions.addPlugin(report);
+        }
+        ResourceLoader resourceLoader = new MultiLoader(classLoader);
+        cucumber.runtime.Runtime runtime = new cucumber.runtime.Runtime(resourceLoader,
+                new ResourceLoaderClassFinder(resourceLoader, classLoader), classLoader, runtimeOptions);
+        runtime.run();
+        return runtime.exitStatus();
+    }
+
+    /**
+     * Gets the "path:line" of every runnable scenario matching the run tags. With impact_base set, only the
+     * scenarios affected by the changes since that git ref are kept. When the run is sharded
+     * (shard_total &gt; 1) only the scenarios of this shard are returned: the sorted list is dealt round robin
+     * so every shard gets the same share of each feature, whatever host it runs on.
+     *
+     * @return sorted list of scenario locations
+     */
+    static synchronized List<String> selectScenarios() {
+        if (selection == null) {
+            selection = Collections.unmodifiableList(select());
+        }
+        return selection;
+    }
+
+    private static List<String> select() {
+        TagExpression tagExpression = new TagExpression(MainRunner.tags == null ?
+                Collections.emptyList() : Collections.singletonList(MainRunner.tags));
+        List<String> selected = new ArrayList<>();
+        for (Map.Entry<String, Map> entry : MainRunner.features.entrySet()) {
+            Map element = entry.getValue();
+            if ("background".equals(element.get("type"))) {
+                continue;
+            }
+            List<Tag> tags = new ArrayList<>();
+            addTags(tags, element.get("feature_tags"));
+            addTags(tags, element.get("tags"));
+            if (tagExpression.evaluate(tags)) {
+                selected.add(entry.getKey());
+            }
+        }
+        Collections.sort(selected);
+        if (StringUtils.isNotEmpty(MainRunner.impactBase)) {
+            selected = new ArrayList<>(ImpactRecorder.affected(selected, MainRunner.impactBase));
+        }
+        if (MainRunner.shardTotal > 1) {
+            List<String> shard = new ArrayList<>();
+            for (int i = MainRunner.shardIndex; i < selected.size(); i += MainRunner.shardTotal) {
+                shard.add(selected.get(i));
+            }
+            return shard;
+        }
+        return selected;
+    }
+
+    private static void addTags(List<Tag> tags, Object tagList) {
+        if (!(tagList instanceof List)) {
+            return;
+        }
+        for (Object tag : (List) tagList) {
+            Map tagMap = (Map) tag;
+            tags.add(new Tag((String) tagMap.get("name"), Utils.parseInt(tagMap.get("line"), 0)));
+        }
+    }
+
+    /**
+     * Condenses scenario locations to one cucumber feature path per feature file
+     *
+     * @param scenarios scenario locations as "path:line"
+     * @return feature paths as "path:l1:l2", in order of first appearance
+     */
+    static List<String> condense(List<String> scenarios) {
+        LinkedHashMap<String, List<String>> features = new LinkedHashMap<>();
+        for (String scenario : scenarios) {
+            int lineIndex = scenario.lastIndexOf(':');
+            features.computeIfAbsent(scenario.substring(0, lineIndex), k -> new ArrayList<>())
+                    .add(scenario.substring(lineIndex + 1));
+        }
+        List<String> paths = new ArrayList<>();
+        features.forEach((path, lines) -> paths.add(path + ":" + StringUtils.join(lines, ":")));
+        return paths;
+    }
+
+    /**
+     * Cucumber HTML report of one worker. Cucumber finishes its reports at the end of each run, this keeps the
+     * report open across the runs of the worker's batches until {@link #finish()}.
+     */
+    private static class WorkerReport implements Formatter, Reporter {
+        private final Formatter formatter;
+        private final Reporter reporter;
+
+        private WorkerReport(String plugin) {
+            Object html = new PluginFactory().create(plugin);
+            formatter = (Formatter) html;
+            reporter = (Reporter) html;
+        }
+
+        // writes the end of the report and copies its assets
+        private void finish() {
+            try {
+                formatter.done();
+                formatter.close();
+            } catch (RuntimeException e) {
+                System.err.println("-->Unable to write HTML report: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void done() {
+            // more batches may follow, see finish()
+        }
+
+        @Override
+        public void close() {
+            // more batches may follow, see finish()
+        }
+
+        @Override
+        public void syntaxError(String state, String event, List<String> legalEvents, String uri, Integer line) {
+            formatter.syntaxError(state, event, legalEvents, uri, line);
+        }
+
+        @Override
+        public void uri(String uri) {
+            formatter.uri(uri);
+        }
+
+        @Override
+        public void feature(Feature feature) {
+            formatter.feature(feature);
+        }
+
+        @Override
+        public void scenarioOutline(ScenarioOutline scenarioOutline) {
+            formatter.scenarioOutline(scenarioOutline);
+        }
+
+        @Override
+        public void examples(Examples examples) {
+            formatter.examples(examples);
+        }
+
+        @Override
+        public void startOfScenarioLifeCycle(Scenario scenario) {
+            formatter.startOfScenarioLifeCycle(scenario);
+        }
+
+        @Override
+        public void background(Background background) {
+            formatter.background(background);
+        }
+
+        @Override
+        public void scenario(Scenario scenario) {
+            formatter.scenario(scenario);
+        }
+
+        @Override
+        public void step(Step step) {
+            formatter.step(step);
+        }
+
+        @Override
+        public void endOfScenarioLifeCycle(Scenario scenario) {
+            formatter.endOfScenarioLifeCycle(scenario);
+        }
+
+        @Override
+        public void eof() {
+            formatter.eof();
+        }
+
+        @Override
+        public void before(Match match, Result result) {
+            reporter.before(match, result);
+        }
+
+        @Override
+        public void result(Result result) {
+            reporter.result(result);
+        }
+
+        @Override
+        public void after(Match match, Result result) {
+            reporter.after(match, result);
+        }
+
+        @Override
+        public void match(Match match) {
+            reporter.match(match);
+        }
+
+        @Override
+        public void embedding(String mimeType, byte[] data) {
+            reporter.embedding(mimeType, data);
+        }
+
+        @Override
+        public void write(String text) {
+            reporter.write(text);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package db.framework.runner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Recent failure rate of scenarios, used to run likely failures first
+ * <p>
+ * Every run adds its passed (0) and failed (1) scenarios to an exponentially weighted moving average per
+ * "feature path:line", so recent failures count most. A scenario that passed on retry counts as failed.
+ * Skipped scenarios are not counted. Stored in the "run_history" env variable file, default
+ * target/run-history.tsv. Scenarios that never ran are treated as failing half of the time, so new scenarios
+ * run early too.
+ * </p>
+ */
+class RunHistory {
+
+    private static final double ALPHA = 0.4;
+    private static final double UNKNOWN_FAILURE_RATE = 0.5;
+
+    private final ScenarioAverages averages;
+
+    private RunHistory(ScenarioAverages averages) {
+        this.averages = averages;
+    }
+
+    /**
+     * Loads the run history
+     *
+     * @return history, empty if there is none yet
+     */
+    static RunHistory load() {
+        return new RunHistory(ScenarioAverages.load("run_history", "target/run-history.tsv", "failure rate"));
+    }
+
+    /**
+     * Records the scenario outcomes of a run and saves the history
+     *
+     * @param resultFile cucumber.json written by DBFormatter
+     */
+    static void update(File resultFile) {
+        ScenarioAverages db = load().averages;
+        int[] recorded = {0};
+        ScenarioAverages.readResults(resultFile, (scenario, status, millis) -> {
+            if (status != ScenarioAverages.Status.SKIPPED) {
+                db.add(scenario, status == ScenarioAverages.Status.PASSED ? 0 : 1, ALPHA);
+                recorded[0]++;
+            }
+        });
+        if (recorded[0] > 0) {
+            db.save();
+        }
+    }
+
+    /**
+     * @param scenario scenario location "path:line"
+     * @return recent failure rate from 0 to 1
+     */
+    double failureRate(String scenario) {
+        Double rate = averages.get(scenario);
+        return rate == null ? UNKNOWN_FAILURE_RATE : rate;
+    }
+
+    /**
+     * Orders scenarios by failure rate, most likely failures first. Scenarios with the same rate keep their order.
+     *
+     * @param scenarios scenario locations "path:line"
+     * @return ordered copy of the list
+     */
+    List<String> flakyFirst(List<String> scenarios) {
+        List<String> ordered = new ArrayList<>(scenarios);
+        ordered.sort(Comparator.comparingDouble(scenario -> -failureRate(scenario)));
+        return ordered;
+    }
+}
@@ -0,0 +1,281 @@
+package db.framework.runner;
+
+import db.framework.utils.CucumberJsonMerger;
+import gherkin.deps.com.google.gson.Gson;
+import gherkin.deps.com.google.gson.stream.JsonReader;
+import gherkin.deps.com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Small file database of a moving average per scenario, shared by {@link ScenarioTimings} and {@link RunHistory}
+ * <p>
+ * The file is tab separated: average, number of runs, "feature path:line". Scenarios are matched by path
+ * suffix, so a scenario recorded as "features/a.feature:5" is found as "/workspace/features/a.feature:5".
+ * </p>
+ */
+class ScenarioAverages {
+
+    /**
+     * Status of a scenario in a result file
+     */
+    enum Status {PASSED, PASSED_ON_RETRY, FAILED, SKIPPED}
+
+    private final File file;
+    private final String columns;
+    private final Map<String, Average> averages = new TreeMap<>();
+    // "file name:line" => keys, to match paths given with another prefix than the one recorded
+    private final Map<String, List<String>> byName = new HashMap<>();
+
+    private ScenarioAverages(File file, String columns) {
+        this.file = file;
+        this.columns = columns;
+    }
+
+    /**
+     * Loads a database
+     *
+     * @param param   env variable holding the file path
+     * @param path    default file path
+     * @param columns description of the value column, written in the file header
+     * @return averages, empty if the file doesn't exist yet
+     */
+    static ScenarioAverages load(String param, String path, String columns) {
+        String value = MainRunner.getEnvOrExParam(param);
+        ScenarioAverages db = new ScenarioAverages(new File(value == null || value.isEmpty() ? path : value), columns);
+        if (!db.file.exists()) {
+            return db;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(db.file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (line.startsWith("#") || fields.length < 3) {
+                    continue;
+                }
+                try {
+                    db.put(fields[2], new Average(Double.parseDouble(fields[0]), Integer.parseInt(fields[1])));
+                } catch (NumberFormatException e) {
+                    // skip corrupt line
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("-->Unable to read " + db.file.getPath() + ": " + e.getMessage());
+        }
+        return db;
+    }
+
+    /**
+     * @param scenario scenario location "path:line"
+     * @return average of the scenario, null if it was never recorded
+     */
+    Double get(String scenario) {
+        String key = normalize(scenario);
+        Average average = averages.get(key);
+        if (average == null) {
+            List<String> candidates = byName.get(nameKey(key));
+            if (candidates != null) {
+                for (String candidate : candidates) {
+                    if (key.endsWith("/" + candidate) || candidate.endsWith("/" + key)) {
+                        average = averages.get(candidate);
+                        break;
+                    }
+                }
+            }
+        }
+        return average == null ? null : average.value;
+    }
+
+    /**
+     * @return averages of all scenarios
+     */
+    List<Double> values() {
+        List<Double> values = new ArrayList<>();
+        averages.values().forEach(average -> values.add(average.value));
+        return values;
+    }
+
+    /**
+     * Adds a value to the exponentially weighted moving average of a scenario
+     *
+     * @param scenario scenario location "path:line"
+     * @param value    new value
+     * @param alpha    weight of the new value, from 0 to 1
+     */
+    void add(String scenario, double value, double alpha) {
+        String key = normalize(scenario);
+        Average average = averages.get(key);
+        put(key, average == null ? new Average(value, 1) :
+                new Average(alpha * value + (1 - alpha) * average.value, average.runs + 1));
+    }
+
+    /**
+     * Writes the database through a temp file, so concurrent runs never read a partial file
+     */
+    void save() {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+                throw new IOException("Unable to create " + dir.getPath());
+            }
+            File temp = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                    writer.write("# " + columns + "\truns\tscenario\n");
+                    for (Map.Entry<String, Average> entry : averages.entrySet()) {
+                        writer.write(String.format("%s\t%d\t%s%n", format(entry.getValue().value), entry.getValue().runs, entry.getKey()));
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("-->Unable to save " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the scenarios of a result file written by DBFormatter, one feature at a time
+     *
+     * @param resultFile cucumber.json of a run
+     * @param consumer   gets the location, status and duration (with its background) of each scenario
+     * @return number of scenarios read
+     */
+    static int readResults(File resultFile, ResultConsumer consumer) {
+        if (!resultFile.exists()) {
+            return 0;
+        }
+        Gson gson = new Gson();
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(
+                new FileInputStream(resultFile), StandardCharsets.UTF_8), 1 << 16))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("run") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    count += readFeature(gson.fromJson(reader, Map.class), consumer);
+                }
+                reader.endArray();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("-->Unable to read scenario results from " + resultFile.getPath() + ": " + e.getMessage());
+        }
+        return count;
+    }
+
+    private static int readFeature(Map feature, ResultConsumer consumer) {
+        Object elements = feature.get("elements");
+        if (!(elements instanceof List)) {
+            return 0;
+        }
+        int count = 0;
+        long background = 0;
+        Status backgroundStatus = Status.PASSED;
+        for (Object item : (List) elements) {
+            Map element = (Map) item;
+            long[] nanos = {0};
+            Status status = worst(worst(addDurations(element.get("before"), nanos), addDurations(element.get("steps"), nanos)),
+                    addDurations(element.get("after"), nanos));
+            if ("background".equals(element.get("type"))) {
+                background = nanos[0];
+                backgroundStatus = status;
+                continue;
+            }
+            Object line = element.get("line");
+            if (line instanceof Number) {
+                status = worst(backgroundStatus, status);
+                if (status == Status.PASSED && CucumberJsonMerger.hasTag(element, CucumberJsonMerger.PASSED_ON_RETRY)) {
+                    status = Status.PASSED_ON_RETRY;
+                }
+                consumer.accept(feature.get("uri") + ":" + ((Number) line).intValue(), status, (background + nanos[0]) / 1e6);
+                count++;
+            }
+            background = 0;
+            backgroundStatus = Status.PASSED;
+        }
+        return count;
+    }
+
+    // adds the durations of steps or hooks and gets their overall status
+    private static Status addDurations(Object stepsOrHooks, long[] nanos) {
+        Status status = Status.PASSED;
+        if (stepsOrHooks instanceof List) {
+            for (Object item : (List) stepsOrHooks) {
+                Object result = ((Map) item).get("result");
+                if (!(result instanceof Map)) {
+                    status = worst(status, Status.SKIPPED);
+                    continue;
+                }
+                Object duration = ((Map) result).get("duration");
+                if (duration instanceof Number) {
+                    nanos[0] += ((Number) duration).longValue();
+                }
+                Object name = ((Map) result).get("status");
+                status = worst(status, "passed".equals(name) ? Status.PASSED :
+                        "failed".equals(name) || "undefined".equals(name) ? Status.FAILED : Status.SKIPPED);
+            }
+        }
+        return status;
+    }
+
+    private static Status worst(Status a, Status b) {
+        return a == Status.FAILED || b == Status.FAILED ? Status.FAILED :
+                a == Status.SKIPPED || b == Status.SKIPPED ? Status.SKIPPED : Status.PASSED;
+    }
+
+    private void put(String key, Average average) {
+        if (averages.put(key, average) == null) {
+            byName.computeIfAbsent(nameKey(key), k -> new ArrayList<>()).add(key);
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String normalize(String scenario) {
+        String key = scenario.replace('\\', '/');
+        while (key.startsWith("./")) {
+            key = key.substring(2);
+        }
+        return key;
+    }
+
+    private static String nameKey(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @FunctionalInterface
+    interface ResultConsumer {
+        void accept(String scenario, Status status, double millis);
+    }
+
+    private static class Average {
+        private final double value;
+        private final int runs;
+
+        private Average(double value, int runs) {
+            this.value = value;
+            this.runs = runs;
+        }
+    }
+}
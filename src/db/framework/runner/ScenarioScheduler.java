@@ -0,0 +1,151 @@
+package db.framework.runner;
+
+import db.framework.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands scenarios to parallel workers so they all finish at about the same time
+ * <p>
+ * Scenarios are dealt longest first to the worker with the least expected work, using the durations of
+ * {@link ScenarioTimings}. Each worker runs its own queue longest first; a worker whose queue is empty
+ * steals the shortest scenarios, up to half the expected work, left in the queue with the most expected work,
+ * which absorbs wrong estimates and scenarios that never ran before. With run_order=flaky_first, scenarios
+ * that failed recently are dealt and run before the others.
+ * </p>
+ * Scenarios are handed out in batches that each take one cucumber run. The batch size is the "schedule_batch"
+ * param, by default a worker's queue is split into {@value #BATCHES_PER_WORKER} batches, or a single one when
+ * there is only one worker and nothing to steal. A steal takes at most one batch.
+ */
+class ScenarioScheduler {
+
+    private static final int BATCHES_PER_WORKER = 4;
+
+    private final List<ConcurrentLinkedDeque<Task>> queues = new ArrayList<>();
+    private final AtomicLong[] queued;
+    private final int batchSize;
+    private final int[] stolen;
+
+    /**
+     * Plans the run
+     *
+     * @param scenarios scenario locations "path:line"
+     * @param workers   number of workers
+     * @param timings   past scenario durations
+     * @param history   past failures to run likely failures first, null to only balance durations
+     */
+    ScenarioScheduler(List<String> scenarios, int workers, ScenarioTimings timings, RunHistory history) {
+        int batches = workers == 1 ? 1 : workers * BATCHES_PER_WORKER;
+        int defaultBatch = Math.max(1, (scenarios.size() + batches - 1) / batches);
+        this.batchSize = Math.max(1, Utils.parseInt(MainRunner.getEnvOrExParam("schedule_batch"), defaultBatch));
+        this.queued = new AtomicLong[workers];
+        this.stolen = new int[workers];
+        List<Task> tasks = new ArrayList<>();
+        for (String scenario : scenarios) {
+            tasks.add(new Task(scenario, timings.estimate(scenario), history == null ? 0 : history.failureRate(scenario)));
+        }
+        tasks.sort(Comparator.comparingDouble((Task task) -> -task.failureRate)
+                .thenComparingLong(task -> -task.estimate).thenComparing(task -> task.scenario));
+
+        PriorityQueue<long[]> loads = new PriorityQueue<>(Comparator.<long[]>comparingLong(load -> load[0])
+                .thenComparingLong(load -> load[1]));
+        for (int i = 0; i < workers; i++) {
+            queues.add(new ConcurrentLinkedDeque<>());
+            queued[i] = new AtomicLong();
+            loads.add(new long[]{0, i});
+        }
+        for (Task task : tasks) {
+            long[] load = loads.poll();
+            queues.get((int) load[1]).addLast(task);
+            queued[(int) load[1]].addAndGet(task.estimate);
+            load[0] += task.estimate;
+            loads.add(load);
+        }
+    }
+
+    /**
+     * Gets the next scenarios to run
+     *
+     * @param worker 0 based worker index
+     * @return scenario locations, empty when there is nothing left to run or max_failures is reached
+     */
+    List<String> next(int worker) {
+        List<String> batch = new ArrayList<>();
+        if (MainRunner.failureLimitReached()) {
+            return batch;
+        }
+        Task task;
+        double failureRate = -1;
+        ConcurrentLinkedDeque<Task> queue = queues.get(worker);
+        while (batch.size() < batchSize && (task = queue.pollFirst()) != null) {
+            // cucumber runs a batch in feature path order, so likely failures don't share a batch with the others
+            if (failureRate >= 0 && Double.compare(task.failureRate, failureRate) != 0) {
+                queue.offerFirst(task);
+                break;
+            }
+            failureRate = task.failureRate;
+            queued[worker].addAndGet(-task.estimate);
+            batch.add(task.scenario);
+        }
+        if (!batch.isEmpty()) {
+            return batch;
+        }
+        while (true) {
+            int victim = -1;
+            for (int i = 0; i < queues.size(); i++) {
+                if (i != worker && !queues.get(i).isEmpty() && (victim == -1 || queued[i].get() > queued[victim].get())) {
+                    victim = i;
+                }
+            }
+            if (victim == -1) {
+                return batch;
+            }
+            ConcurrentLinkedDeque<Task> victimQueue = queues.get(victim);
+            long half = queued[victim].get() / 2;
+            long taken = 0;
+            while (batch.size() < batchSize && (batch.isEmpty() || taken < half) && (task = victimQueue.pollLast()) != null) {
+                if (failureRate >= 0 && Double.compare(task.failureRate, failureRate) != 0) {
+                    victimQueue.offerLast(task);
+                    break;
+                }
+                failureRate = task.failureRate;
+                queued[victim].addAndGet(-task.estimate);
+                taken += task.estimate;
+                batch.add(task.scenario);
+            }
+            if (!batch.isEmpty()) {
+                synchronized (stolen) {
+                    stolen[worker] += batch.size();
+                }
+                return batch;
+            }
+        }
+    }
+
+    /**
+     * @param worker 0 based worker index
+     * @return number of scenarios the worker took from other queues
+     */
+    int stolen(int worker) {
+        synchronized (stolen) {
+            return stolen[worker];
+        }
+    }
+
+    private static class Task {
+        private final String scenario;
+        private final long estimate;
+        private final double failureRate;
+
+        private Task(String scenario, long estimate, double failureRate) {
+            this.scenario = scenario;
+            this.estimate = estimate;
+            this.failureRate = failureRate;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package db.framework.runner;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Past durations of scenarios, used to balance parallel workers
+ * <p>
+ * Durations are read from the cucumber.json of each run (sum of the step and hook durations of passed
+ * scenarios, including the ones that passed on retry) and kept as an exponentially weighted moving average
+ * per "feature path:line" in a small tab separated file: "timing_db" env variable, default
+ * target/scenario-timings.tsv.
+ * </p>
+ */
+class ScenarioTimings {
+
+    private static final double ALPHA = 0.3;
+    private static final long DEFAULT_ESTIMATE = 30000;
+
+    private final ScenarioAverages averages;
+    private long defaultEstimate = -1;
+
+    private ScenarioTimings(ScenarioAverages averages) {
+        this.averages = averages;
+    }
+
+    /**
+     * Loads the timing database
+     *
+     * @return timings, empty if there is no database yet
+     */
+    static ScenarioTimings load() {
+        return new ScenarioTimings(ScenarioAverages.load("timing_db", "target/scenario-timings.tsv", "average millis"));
+    }
+
+    /**
+     * Records the durations of a run and saves the database
+     *
+     * @param resultFile cucumber.json written by DBFormatter
+     */
+    static void update(File resultFile) {
+        ScenarioAverages db = load().averages;
+        int[] recorded = {0};
+        ScenarioAverages.readResults(resultFile, (scenario, status, millis) -> {
+            if (status == ScenarioAverages.Status.PASSED || status == ScenarioAverages.Status.PASSED_ON_RETRY) {
+                db.add(scenario, millis, ALPHA);
+                recorded[0]++;
+            }
+        });
+        if (recorded[0] > 0) {
+            db.save();
+        }
+    }
+
+    /**
+     * Gets the expected duration of a scenario
+     *
+     * @param scenario scenario location "path:line"
+     * @return duration in millis, the median of the known scenarios if this one never passed
+     */
+    long estimate(String scenario) {
+        Double millis = averages.get(scenario);
+        return millis != null ? Math.round(millis) : defaultEstimate();
+    }
+
+    /**
+     * @param scenario scenario location "path:line"
+     * @return true if the scenario has a recorded duration
+     */
+    boolean isKnown(String scenario) {
+        return averages.get(scenario) != null;
+    }
+
+    private long defaultEstimate() {
+        if (defaultEstimate < 0) {
+            List<Double> values = averages.values();
+            Collections.sort(values);
+            defaultEstimate = values.isEmpty() ? DEFAULT_ESTIMATE : Math.round(values.get(values.size() / 2));
+        }
+        return defaultEstimate;
+    }
+}
@@ -1,7 +1,7 @@
 package db.framework.runner;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by dasunh on 2/6/2017.
@@ -14,8 +14,14 @@ public class Timeouts {
     private static final int DEFAULT_UNTIL_ELEMENT_PRESENT_TIMEOUT = 5;
     private static final String GENERAL_TIMEOUT_KEY = "general_timeout";
     private static final String UNTIL_ELEMENT_PRESENT_TIMEOUT_KEY = "until_element_present_timeout";
+    private static final int DEFAULT_PAGE_READY_POLL_MILLIS = 100;
+    private static final int DEFAULT_PAGE_READY_MAX_POLL_MILLIS = 1000;
+    private static final String PAGE_READY_POLL_KEY = "page_ready_poll_ms";
+    private static final String PAGE_READY_MAX_POLL_KEY = "page_ready_max_poll_ms";
+    private static final int DEFAULT_IDLE_QUIET_MILLIS = 500;
+    private static final String IDLE_QUIET_KEY = "idle_quiet_ms";
 
-    private static Map<String, Integer> timeouts = new HashMap<>();
+    private static Map<String, Integer> timeouts = new ConcurrentHashMap<>();
     private static Timeouts instance;
 
     /**
@@ -36,12 +42,40 @@ public class Timeouts {
         return getTimeout(GENERAL_TIMEOUT_KEY, DEFAULT_GENERAL_TIMEOUT);
     }
 
+    /**
+     * Gets the first polling interval used while waiting for a page to be ready.
+     * The interval doubles after every poll up to {@link #pageReadyMaxPoll()}.
+     *
+     * @return polling interval in milliseconds
+     */
+    public int pageReadyPoll() {
+        return getTimeout(PAGE_READY_POLL_KEY, DEFAULT_PAGE_READY_POLL_MILLIS);
+    }
+
+    /**
+     * Gets the longest polling interval used while waiting for a page to be ready
+     *
+     * @return polling interval in milliseconds
+     */
+    public int pageReadyMaxPoll() {
+        return Math.max(pageReadyPoll(), getTimeout(PAGE_READY_MAX_POLL_KEY, DEFAULT_PAGE_READY_MAX_POLL_MILLIS));
+    }
+
+    /**
+     * Gets how long a page must have no network, DOM or animation activity to be considered idle
+     *
+     * @return quiet time in milliseconds
+     */
+    public int idleQuiet() {
+        return getTimeout(IDLE_QUIET_KEY, DEFAULT_IDLE_QUIET_MILLIS);
+    }
+
     /**
      * initiate Timeouts instance if not initiated already or reuse the existing one
      *
      * @return Timeouts instance
      */
-    public static Timeouts instance() {
+    public static synchronized Timeouts instance() {
         if (instance == null) {
             instance = new Timeouts();
         }
@@ -52,9 +86,9 @@ public class Timeouts {
      * fetch the timeout in seconds using key from execution environment
      *
      * @param key key passed in execution for timeout
-     * @param defaultSeconds default timeout seconds
+     * @param defaultSeconds default timeout (seconds unless the key is in milliseconds)
      *
-     * @return timeout value in seconds for the key asked
+     * @return timeout value for the key asked
      */
     private int getTimeout(String key, int defaultSeconds) {
         if (!timeouts.containsKey(key)) {
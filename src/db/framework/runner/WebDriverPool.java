@@ -0,0 +1,219 @@
+package db.framework.runner;
+
+import db.framework.utils.Cookies;
+import db.framework.utils.Utils;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of started browsers. Drivers are sanitized when a scenario gives them back
+ * and handed to the next scenario instead of starting a new browser every time.
+ * <p>
+ * Configured with "driver_pool_size" (max number of browsers, default number of workers, 0 disables the pool),
+ * "driver_pool_warmup" (browsers started in the background when the run starts, default pool size)
+ * and "driver_max_reuse" (scenarios a browser runs before it is retired, default 20).
+ * </p>
+ */
+public class WebDriverPool {
+
+    private static final int DEFAULT_MAX_REUSE = 20;
+    private static final long ACQUIRE_TIMEOUT = 5 * 60 * 1000;
+
+    private static final int size = Math.max(0, Utils.parseInt(MainRunner.getEnvOrExParam("driver_pool_size"), MainRunner.workers));
+    private static final int warmup = Math.min(size, Math.max(0, Utils.parseInt(MainRunner.getEnvOrExParam("driver_pool_warmup"), size)));
+    private static final int maxReuse = Math.max(1, Utils.parseInt(MainRunner.getEnvOrExParam("driver_max_reuse"), DEFAULT_MAX_REUSE));
+
+    private static final LinkedBlockingDeque<RemoteWebDriver> idle = new LinkedBlockingDeque<>();
+    private static final Map<RemoteWebDriver, Integer> uses = new ConcurrentHashMap<>();
+    private static final AtomicInteger live = new AtomicInteger();
+    private static volatile boolean closed = false;
+    private static volatile boolean isolated = false;
+
+    private WebDriverPool() {
+    }
+
+    /**
+     * Checks if browsers should be taken from the pool
+     *
+     * @return true if pool is enabled
+     */
+    public static boolean enabled() {
+        return size > 0 && !MainRunner.browser.equals("none");
+    }
+
+    /**
+     * Starts the configured number of browsers in the background
+     */
+    public static void warmUp() {
+        if (!enabled()) {
+            return;
+        }
+        for (int i = 0; i < warmup; i++) {
+            if (!reserve()) {
+                break;
+            }
+            Thread thread = new Thread(() -> {
+                RemoteWebDriver driver = MainRunner.launchDriver();
+                uses.put(driver, 0);
+                if (closed) {
+                    retire(driver);
+                } else {
+                    idle.offer(driver);
+                }
+            }, "driver-warmup-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Takes an idle browser from the pool or starts a new one if the pool is not full yet
+     *
+     * @return browser ready to run a scenario
+     */
+    static RemoteWebDriver acquire() {
+        long ts = System.currentTimeMillis();
+        while (System.currentTimeMillis() - ts < ACQUIRE_TIMEOUT) {
+            RemoteWebDriver driver = idle.pollFirst();
+            if (driver == null && reserve()) {
+                driver = MainRunner.launchDriver();
+                uses.put(driver, 0);
+                return driver;
+            }
+            if (driver == null) {
+                try {
+                    driver = idle.pollFirst(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (driver != null) {
+                if (healthy(driver)) {
+                    return driver;
+                }
+                System.err.println("-->WebDriverPool: retired unresponsive driver");
+                retire(driver);
+            }
+        }
+        // pool is exhausted, start a browser outside of the pool limit rather than stalling the run
+        System.err.println("-->WebDriverPool: no driver available after " + Utils.toDuration(ACQUIRE_TIMEOUT));
+        live.incrementAndGet();
+        RemoteWebDriver driver = MainRunner.launchDriver();
+        uses.put(driver, 0);
+        return driver;
+    }
+
+    /**
+     * Gives a browser back to the pool. The browser must still be the current driver
+     * of the calling worker so its cookies can be cleared.
+     *
+     * @param driver browser to give back
+     */
+    static void release(RemoteWebDriver driver) {
+        int used = uses.getOrDefault(driver, 0) + 1;
+        if (closed || isolated || used >= maxReuse || !sanitize(driver) || !healthy(driver)) {
+            retire(driver);
+            return;
+        }
+        uses.put(driver, used);
+        idle.offerFirst(driver);
+    }
+
+    /**
+     * Removes a browser from the pool without closing it
+     *
+     * @param driver browser to keep open
+     */
+    static void detach(RemoteWebDriver driver) {
+        if (uses.remove(driver) != null) {
+            live.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes all idle browsers and stops reusing browsers, so every scenario from now on starts a new one.
+     * Used to retry failed scenarios away from browsers that may have caused the failure.
+     */
+    static void isolate() {
+        isolated = true;
+        RemoteWebDriver driver;
+        while ((driver = idle.pollFirst()) != null) {
+            retire(driver);
+        }
+    }
+
+    /**
+     * Closes all idle browsers. Browsers released afterwards are closed right away.
+     */
+    static void shutdown() {
+        closed = true;
+        RemoteWebDriver driver;
+        while ((driver = idle.pollFirst()) != null) {
+            retire(driver);
+        }
+    }
+
+    private static boolean reserve() {
+        while (true) {
+            int current = live.get();
+            if (current >= size) {
+                return false;
+            }
+            if (live.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void retire(RemoteWebDriver driver) {
+        detach(driver);
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            System.err.println("-->WebDriverPool: error quitting driver: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Clears everything a scenario could leave behind: extra windows, storage, cookies and the loaded page
+     *
+     * @param driver browser to clean up
+     * @return false if the browser failed to clean up and should not be reused
+     */
+    private static boolean sanitize(RemoteWebDriver driver) {
+        try {
+            ArrayList<String> windows = new ArrayList<>(driver.getWindowHandles());
+            for (int i = 1; i < windows.size(); i++) {
+                driver.switchTo().window(windows.get(i));
+                driver.close();
+            }
+            driver.switchTo().window(windows.get(0));
+            try {
+                driver.executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+            } catch (Exception e) {
+                // storage is not accessible on this page
+            }
+            Cookies.deleteAllCookies();
+            driver.get("about:blank");
+            return true;
+        } catch (Exception e) {
+            System.err.println("-->WebDriverPool: failed to sanitize driver: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean healthy(RemoteWebDriver driver) {
+        try {
+            return driver.getSessionId() != null && driver.getWindowHandle() != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package db.framework.utils;
+
+import gherkin.deps.com.google.gson.Gson;
+import gherkin.deps.com.google.gson.GsonBuilder;
+import gherkin.deps.com.google.gson.stream.JsonReader;
+import gherkin.deps.com.google.gson.stream.JsonToken;
+import gherkin.deps.com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the cucumber.json files written by {@link DBFormatter} into a single result file
+ * <p>
+ * Files are streamed one feature at a time, so merging doesn't need more memory than the largest feature.
+ * A scenario found more than once (a retried scenario or a re-run shard) is only kept from the file that
+ * started last. If it failed before and passed in that last run, it gets the {@value #PASSED_ON_RETRY} tag
+ * so the report doesn't show it as a plain pass.
+ * </p>
+ * Merge the shards of a run and build the report:
+ * {@code java db.framework.utils.CucumberJsonMerger logs/cucumber.json shard-results/}
+ */
+public class CucumberJsonMerger {
+
+    /**
+     * Tag added to scenarios that failed and then passed when run again
+     */
+    public static final String PASSED_ON_RETRY = "@passed_on_retry";
+
+    private CucumberJsonMerger() {
+    }
+
+    /**
+     * Merges result files, then writes the features as a plain cucumber json array and generates the
+     * masterthought report from it
+     *
+     * @param args target file followed by result files or directories holding cucumber-shard-*.json files
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("-->Usage: CucumberJsonMerger <target.json> <result file or directory>...");
+            return;
+        }
+        File target = new File(args[0]);
+        List<File> parts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            File arg = new File(args[i]);
+            File[] shards = arg.isDirectory() ? arg.listFiles((dir, name) -> name.matches("cucumber-shard-\\d+\\.json")) : null;
+            if (shards != null) {
+                Arrays.sort(shards);
+                parts.addAll(Arrays.asList(shards));
+            } else {
+                parts.add(arg);
+            }
+        }
+        try {
+            merge(parts, target);
+            File report = new File(target.getAbsoluteFile().getParentFile(), "cucumber-report.json");
+            exportFeatures(target, report);
+            GenerateReport.GenerateMasterthoughtReport(Collections.singletonList(report.getPath()));
+        } catch (IOException e) {
+            System.err.println("-->Unable to merge results: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Merges result files. Features are appended in the order the files started, start and end time cover
+     * the whole set of runs. Only the last run of a scenario (same feature uri and line) is kept, tagged
+     * {@value #PASSED_ON_RETRY} if an earlier run failed and every hook and step of the last one passed.
+     *
+     * @param parts  result files to merge, missing files are skipped
+     * @param target file to write the merged result to
+     * @throws IOException if the target can't be written
+     */
+    public static void merge(List<File> parts, File target) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        List<Part> ordered = new ArrayList<>();
+        for (File file : parts) {
+            if (!file.exists()) {
+                System.err.println("-->Missing result file: " + file.getPath());
+                continue;
+            }
+            ordered.add(new Part(file));
+        }
+
+        // first pass: run times of each file, number of runs and failed runs of each scenario
+        Map<String, Integer> runs = new HashMap<>();
+        Map<String, Integer> failures = new HashMap<>();
+        for (Part part : ordered) {
+            read(part, gson, feature -> {
+                boolean backgroundFailed = false;
+                for (Map element : elements(feature)) {
+                    if (isBackground(element)) {
+                        backgroundFailed = failed(element);
+                        continue;
+                    }
+                    String key = key(feature, element);
+                    runs.merge(key, 1, Integer::sum);
+                    if (backgroundFailed || failed(element)) {
+                        failures.merge(key, 1, Integer::sum);
+                    }
+                    backgroundFailed = false;
+                }
+            });
+        }
+        ordered.sort(Comparator.comparingLong(part -> part.startTime));
+
+        // second pass: write features with the last run of each scenario
+        Map<String, Integer> seen = new HashMap<>();
+        Object environment = null;
+        long startTime = Long.MAX_VALUE;
+        long endTime = 0;
+        int dropped = 0;
+        int[] passedOnRetry = {0};
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(target), StandardCharsets.UTF_8), 1 << 16))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("run");
+            writer.beginArray();
+            for (Part part : ordered) {
+                int[] partDropped = {0};
+                read(part, gson, feature -> {
+                    List<Map> kept = new ArrayList<>();
+                    List<Map> backgrounds = new ArrayList<>();
+                    for (Map element : elements(feature)) {
+                        if (isBackground(element)) {
+                            backgrounds.add(element);
+                            continue;
+                        }
+                        String key = key(feature, element);
+                        if (seen.merge(key, 1, Integer::sum).equals(runs.get(key))) {
+                            if (failures.containsKey(key) && passed(element) && backgrounds.stream().allMatch(CucumberJsonMerger::passed)) {
+                                addTag(element, PASSED_ON_RETRY);
+                            }
+                            if (hasTag(element, PASSED_ON_RETRY)) {
+                                passedOnRetry[0]++;
+                            }
+                            kept.addAll(backgrounds);
+                            kept.add(element);
+                        } else {
+                            partDropped[0]++;
+                        }
+                        backgrounds.clear();
+                    }
+                    if (!kept.isEmpty() || elements(feature).isEmpty()) {
+                        feature.put("elements", kept);
+                        gson.toJson(feature, Map.class, writer);
+                    }
+                });
+                dropped += partDropped[0];
+                if (environment == null) {
+                    environment = part.environment;
+                }
+                startTime = Math.min(startTime, part.startTime);
+                endTime = Math.max(endTime, part.endTime);
+            }
+            writer.endArray();
+            writer.name("environment_variables");
+            gson.toJson(environment, Map.class, writer);
+            writer.name("start_time").value(startTime == Long.MAX_VALUE ? System.currentTimeMillis() : startTime);
+            writer.name("end_time").value(endTime == 0 ? System.currentTimeMillis() : endTime);
+            writer.endObject();
+        }
+        if (dropped > 0) {
+            System.out.println("Merged " + ordered.size() + " result files, dropped " + dropped + " earlier runs of retried scenarios");
+        }
+        if (passedOnRetry[0] > 0) {
+            System.out.println(passedOnRetry[0] + " scenarios passed on retry");
+        }
+    }
+
+    /**
+     * Writes the features of a result file as a plain cucumber json array, as read by report tools.
+     * Embeddings are left out, they are saved as files next to the result file.
+     *
+     * @param resultFile result file written by {@link DBFormatter} or {@link #merge(List, File)}
+     * @param target     file to write the features to
+     * @throws IOException if the target can't be written
+     */
+    @SuppressWarnings("unchecked")
+    public static void exportFeatures(File resultFile, File target) throws IOException {
+        Gson gson = new Gson();
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(target), StandardCharsets.UTF_8), 1 << 16))) {
+            writer.beginArray();
+            read(new Part(resultFile), gson, feature -> {
+                for (Map element : elements(feature)) {
+                    Object steps = element.get("steps");
+                    if (steps instanceof List) {
+                        for (Object step : (List) steps) {
+                            ((Map) step).remove("embeddings");
+                        }
+                    }
+                }
+                gson.toJson(feature, Map.class, writer);
+            });
+            writer.endArray();
+        }
+    }
+
+    // streams the features of a result file, remembering its times and environment
+    private static void read(Part part, Gson gson, FeatureConsumer consumer) {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(
+                new FileInputStream(part.file), StandardCharsets.UTF_8), 1 << 16))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("run") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        consumer.accept(gson.fromJson(reader, Map.class));
+                    }
+                    reader.endArray();
+                } else if (name.equals("environment_variables") && part.environment == null) {
+                    part.environment = gson.fromJson(reader, Map.class);
+                } else if (name.equals("start_time") && reader.peek() == JsonToken.NUMBER) {
+                    part.startTime = reader.nextLong();
+                } else if (name.equals("end_time") && reader.peek() == JsonToken.NUMBER) {
+                    part.endTime = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // a worker that died leaves an unfinished file, keep the features read so far
+            if (!part.reported) {
+                part.reported = true;
+                System.err.println("-->Unable to read result file " + part.file.getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map> elements(Map feature) {
+        Object elements = feature.get("elements");
+        return elements instanceof List ? (List<Map>) elements : Collections.emptyList();
+    }
+
+    private static boolean isBackground(Map element) {
+        return "background".equals(element.get("type"));
+    }
+
+    // true if a hook or step of the element failed
+    private static boolean failed(Map element) {
+        for (String name : new String[]{"before", "steps", "after"}) {
+            Object items = element.get(name);
+            if (!(items instanceof List)) {
+                continue;
+            }
+            for (Object item : (List) items) {
+                Object result = ((Map) item).get("result");
+                if (result instanceof Map && "failed".equals(((Map) result).get("status"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // true if every hook and step of the element passed, skipped, pending or undefined steps don't count as passed
+    private static boolean passed(Map element) {
+        for (String name : new String[]{"before", "steps", "after"}) {
+            Object items = element.get(name);
+            if (!(items instanceof List)) {
+                continue;
+            }
+            for (Object item : (List) items) {
+                Object result = ((Map) item).get("result");
+                if (!(result instanceof Map) || !"passed".equals(((Map) result).get("status"))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a scenario of a result file has a tag
+     *
+     * @param element scenario as read from a result file
+     * @param tag     tag name with its "@"
+     * @return true if the scenario has the tag
+     */
+    public static boolean hasTag(Map element, String tag) {
+        Object tags = element.get("tags");
+        if (tags instanceof List) {
+            for (Object existing : (List) tags) {
+                if (existing instanceof Map && tag.equals(((Map) existing).get("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addTag(Map element, String tag) {
+        if (hasTag(element, tag)) {
+            return;
+        }
+        Object tags = element.get("tags");
+        List<Map> tagList = tags instanceof List ? (List<Map>) tags : new ArrayList<>();
+        Map<String, Object> newTag = new HashMap<>();
+        newTag.put("name", tag);
+        Object line = element.get("line");
+        newTag.put("line", line instanceof Number ? ((Number) line).intValue() : line);
+        tagList.add(newTag);
+        element.put("tags", tagList);
+    }
+
+    // identifies a scenario (or example row) across result files
+    private static String key(Map feature, Map element) {
+        Object line = element.get("line");
+        return feature.get("uri") + ":" + (line instanceof Number ? ((Number) line).intValue() : line) + ":" + element.get("id");
+    }
+
+    @FunctionalInterface
+    private interface FeatureConsumer {
+        void accept(Map feature) throws IOException;
+    }
+
+    // result file and what was read of it
+    private static class Part {
+        private final File file;
+        private long startTime = Long.MAX_VALUE;
+        private long endTime = 0;
+        private Object environment;
+        private boolean reported = false;
+
+        private Part(File file) {
+            this.file = file;
+        }
+    }
+}
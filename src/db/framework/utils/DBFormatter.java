@@ -2,27 +2,42 @@ package db.framework.utils;
 
 import db.framework.runner.MainRunner;
 import gherkin.deps.com.google.gson.GsonBuilder;
-import gherkin.deps.net.iharder.Base64;
+import gherkin.deps.com.google.gson.stream.JsonWriter;
 import gherkin.formatter.Formatter;
 import gherkin.formatter.NiceAppendable;
 import gherkin.formatter.Reporter;
 import gherkin.formatter.model.*;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 
+/**
+ * Writes cucumber.json incrementally
+ * <p>
+ * Only the running feature is kept in memory, each feature is written to the result file once it's done.
+ * Embeddings (screenshots, html) are written in the background by {@link ScreenshotPipeline} as separate
+ * files in the "embeddings" folder next to the result file and referenced by their path relative to it.
+ * </p>
+ */
 public class DBFormatter implements Reporter, Formatter {
-    private final List<Map<String, Object>> featureMaps = new ArrayList<>();
     private final NiceAppendable out;
 
     private Map<String, Object> featureMap;
     private String uri;
     private List<Map> beforeHooks = new ArrayList<>();
-    private File m_fcucumberJson = new File(MainRunner.logs + "cucumber.json");
+    private File m_fcucumberJson = MainRunner.resultFile();
+    private JsonWriter jsonWriter;
+    private int embeddingCount = 0;
+    private gherkin.deps.com.google.gson.Gson gson;
 
     public DBFormatter(Appendable out) {
         this.out = new NiceAppendable(out);
@@ -48,9 +63,9 @@ public class DBFormatter implements Reporter, Formatter {
 
     @Override
     public void feature(Feature feature) {
+        writeFeature();
         featureMap = feature.toMap();
         featureMap.put("uri", uri);
-        featureMaps.add(featureMap);
     }
 
     @Override
@@ -84,14 +99,21 @@ public class DBFormatter implements Reporter, Formatter {
 
     @Override
     public void match(Match match) {
+        // called on the worker thread before every step runs
+        MainRunner.PageHangWatchDog.progress();
         getCurrentStep(Phase.match).put("match", match.toMap());
+        ImpactRecorder.step(match.getLocation());
     }
 
     @Override
     public void embedding(String mimeType, byte[] data) {
         final Map<String, String> embedding = new HashMap<>();
         embedding.put("mime_type", mimeType);
-        embedding.put("data", Base64.encodeBytes(data));
+        File dir = new File(m_fcucumberJson.getAbsoluteFile().getParentFile(), "embeddings");
+        String baseName = m_fcucumberJson.getName().replaceFirst("\\.json$", "");
+        File file = new File(dir, baseName + "-" + (++embeddingCount) + "." + extension(mimeType));
+        ScreenshotPipeline.submitFile(data, file);
+        embedding.put("path", dir.getName() + "/" + file.getName());
         getEmbeddings().add(embedding);
     }
 
@@ -102,6 +124,7 @@ public class DBFormatter implements Reporter, Formatter {
 
     @Override
     public void result(Result result) {
+        MainRunner.PageHangWatchDog.progress();
         if (!result.getStatus().equals("passed")) {
             System.err.println(" --> " + result.getStatus().toUpperCase());
         }
@@ -109,11 +132,10 @@ public class DBFormatter implements Reporter, Formatter {
         if (!result.getStatus().equals("passed")) {
             String tempUri = this.uri;
             if (ScenarioHelper.isScenarioOutline()) {
-                tempUri += ScenarioHelper.outlineCount;
+                tempUri += ScenarioHelper.getOutlineCount();
             }
             String screenShot = Utils.getScenarioShaKey(tempUri, ":" + this.getSteps().size()) + ".png";
-            StepUtils.browserScreenCapture(screenShot);
-            map.put("screen_shot", screenShot);
+            map.put("screen_shot", StepUtils.browserScreenCapture(screenShot));
         }
         getCurrentStep(Phase.result).put("result", map);
     }
@@ -152,17 +174,79 @@ public class DBFormatter implements Reporter, Formatter {
 
     @Override
     public void eof() {
+        writeFeature();
     }
 
     @Override
     public void done() {
-        HashMap<String, Object> job = new HashMap<>();
-        job.put("run", featureMaps);
-        job.put("environment_variables", System.getenv());
-        job.put("start_time", MainRunner.startTime);
-        job.put("end_time", System.currentTimeMillis());
-        String json = gson().toJson(job);
-        Utils.writeSmallBinaryFile(json.getBytes(), m_fcucumberJson);
+        writeFeature();
+        ScreenshotPipeline.flush();
+        try {
+            JsonWriter writer = getJsonWriter();
+            writer.endArray();
+            writer.name("environment_variables");
+            gson().toJson(System.getenv(), Map.class, writer);
+            writer.name("end_time").value(System.currentTimeMillis());
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("-->Unable to write " + m_fcucumberJson.getPath() + ": " + e.getMessage());
+        } finally {
+            jsonWriter = null;
+        }
+    }
+
+    // appends the finished feature to the result file and forgets it
+    private void writeFeature() {
+        if (featureMap == null) {
+            return;
+        }
+        try {
+            JsonWriter writer = getJsonWriter();
+            gson().toJson(featureMap, Map.class, writer);
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("-->Unable to write feature " + featureMap.get("uri") + " to " + m_fcucumberJson.getPath() + ": " + e.getMessage());
+        }
+        featureMap = null;
+    }
+
+    // result file writer, positioned in the "run" array
+    private JsonWriter getJsonWriter() throws IOException {
+        if (jsonWriter == null) {
+            File dir = m_fcucumberJson.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir.getPath());
+            }
+            jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(m_fcucumberJson), StandardCharsets.UTF_8), 1 << 16));
+            jsonWriter.setIndent("  ");
+            jsonWriter.beginObject();
+            jsonWriter.name("start_time").value(MainRunner.startTime);
+            jsonWriter.name("run");
+            jsonWriter.beginArray();
+        }
+        return jsonWriter;
+    }
+
+    private static String extension(String mimeType) {
+        switch (mimeType == null ? "" : mimeType.toLowerCase()) {
+            case "image/png":
+                return "png";
+            case "image/jpeg":
+            case "image/jpg":
+                return "jpg";
+            case "image/gif":
+                return "gif";
+            case "text/html":
+                return "html";
+            case "text/plain":
+                return "txt";
+            case "application/json":
+                return "json";
+            default:
+                return "bin";
+        }
     }
 
     @Override
@@ -177,12 +261,12 @@ public class DBFormatter implements Reporter, Formatter {
 
     @Override
     public void startOfScenarioLifeCycle(Scenario scenario) {
-        // NoOp
+        ImpactRecorder.startScenario(uri, scenario.getLine());
     }
 
     @Override
     public void endOfScenarioLifeCycle(Scenario scenario) {
-        // NoOp
+        ImpactRecorder.endScenario();
     }
 
     private List<Map<String, Object>> getFeatureElements() {
@@ -239,8 +323,12 @@ public class DBFormatter implements Reporter, Formatter {
     }
 
     protected gherkin.deps.com.google.gson.Gson gson() {
-        return new GsonBuilder().setPrettyPrinting().create();
+        if (gson == null) {
+            gson = new GsonBuilder().setPrettyPrinting().create();
+        }
+        return gson;
     }
 
+
     private enum Phase {step, match, embedding, output, result}
 }
\ No newline at end of file
@@ -0,0 +1,349 @@
+package db.framework.utils;
+
+import db.framework.runner.MainRunner;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous logger writing to logs/db-info.log and logs/db-error.log
+ * <p>
+ * Logging threads put events in a lock-free bounded ring buffer and return, a single background thread
+ * formats and writes them. db-info.log receives every event at or above the "log_level" (default INFO),
+ * db-error.log receives WARN and ERROR events. If the buffer is full the event is dropped and counted
+ * rather than blocking the test. Each event carries the context of its thread (scenario, worker),
+ * set with {@link #putContext(String, String)}.
+ * </p>
+ * Settings:
+ * <ul>
+ * <li>log_level: DEBUG, INFO, WARN, ERROR or OFF</li>
+ * <li>log_buffer: number of events the ring buffer holds, rounded up to a power of two, default 8192</li>
+ * </ul>
+ */
+public class DBLog {
+
+    /**
+     * Log levels in increasing order of severity
+     */
+    public enum Level {DEBUG, INFO, WARN, ERROR, OFF}
+
+    private static final Level threshold = parseLevel(MainRunner.getEnvOrExParam("log_level"));
+    private static final int capacity = Integer.highestOneBit(Math.max(16, Utils.parseInt(MainRunner.getEnvOrExParam("log_buffer"), 8192)) - 1) << 1;
+    private static final int mask = capacity - 1;
+
+    // bounded multi-producer single-consumer ring: a slot is free for position p when its sequence is p
+    // and holds the event of position p when its sequence is p + 1
+    private static final Event[] slots = new Event[capacity];
+    private static final AtomicLongArray sequences = new AtomicLongArray(capacity);
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong consumed = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile boolean writerSleeping = false;
+    private static final Thread writer;
+
+    private static final ThreadLocal<Context> context = ThreadLocal.withInitial(Context::new);
+
+    static {
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(DBLog::drain, "db-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(DBLog::flush));
+    }
+
+    private DBLog() {
+    }
+
+    /**
+     * @param level level to check
+     * @return true if events of this level are logged
+     */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    /**
+     * Logs a debug message, the message is only built if debug logging is enabled
+     *
+     * @param message supplies the message
+     */
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * Logs an event
+     *
+     * @param level   event level
+     * @param message event message
+     * @param error   exception to log with its stack trace, may be null
+     */
+    public static void log(Level level, String message, Throwable error) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        Event event = new Event(System.currentTimeMillis(), level, Thread.currentThread().getName(),
+                context.get().rendered, message, error);
+        long position = tail.get();
+        while (true) {
+            long available = sequences.get((int) position & mask) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+        slots[(int) position & mask] = event;
+        sequences.lazySet((int) position & mask, position + 1);
+        if (writerSleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Adds a value to the context of the current thread, logged with each of its events
+     *
+     * @param key   context name, for example "scenario"
+     * @param value context value, null removes it
+     */
+    public static void putContext(String key, String value) {
+        context.get().put(key, value);
+    }
+
+    /**
+     * Removes a value from the context of the current thread
+     *
+     * @param key context name
+     */
+    public static void removeContext(String key) {
+        context.get().put(key, null);
+    }
+
+    /**
+     * Removes all values from the context of the current thread
+     */
+    public static void clearContext() {
+        context.remove();
+    }
+
+    /**
+     * @return values in the context of the current thread
+     */
+    public static Map<String, String> getContext() {
+        return Collections.unmodifiableMap(context.get().values);
+    }
+
+    /**
+     * @return number of events dropped because the buffer was full
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits (up to 5 seconds) until all events logged so far are written
+     */
+    public static void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consumed.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Creates a stream for code that prints to a PrintStream, each line is logged as one event
+     *
+     * @param level level of the logged lines
+     * @return print stream logging its lines
+     */
+    public static PrintStream printStream(Level level) {
+        return new PrintStream(new LineOutputStream(level), true);
+    }
+
+    private static Level parseLevel(String level) {
+        try {
+            return level == null ? Level.INFO : Level.valueOf(level.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("-->Unknown log_level '" + level + "', using INFO");
+            return Level.INFO;
+        }
+    }
+
+    // single consumer of the ring buffer
+    private static void drain() {
+        Writer info = null;
+        Writer errors = null;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        Date date = new Date();
+        long head = 0;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                // nothing to write: flush and wait for the next event
+                try {
+                    if (info != null) {
+                        info.flush();
+                        errors.flush();
+                    }
+                } catch (IOException e) {
+                    System.err.println("-->Unable to write logs: " + e.getMessage());
+                }
+                writerSleeping = true;
+                if (sequences.get(index) != head + 1) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                writerSleeping = false;
+                continue;
+            }
+            Event event = slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, head + capacity);
+            head++;
+            try {
+                if (info == null) {
+                    String dir = (MainRunner.workspace == null ? "" : MainRunner.workspace) + "logs";
+                    Utils.createDirectory(dir);
+                    info = open(new File(dir, "db-info.log"));
+                    errors = open(new File(dir, "db-error.log"));
+                }
+                date.setTime(event.time);
+                String line = format.format(date) + " " + event.level + " [" + event.thread + "]" +
+                        event.context + " " + event.message + System.lineSeparator();
+                info.write(line);
+                if (event.level.compareTo(Level.WARN) >= 0) {
+                    errors.write(line);
+                }
+                if (event.error != null) {
+                    PrintWriter trace = new PrintWriter(event.level.compareTo(Level.WARN) >= 0 ? errors : info);
+                    event.error.printStackTrace(trace);
+                    trace.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("-->Unable to write logs: " + e.getMessage());
+            }
+            consumed.lazySet(head);
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static class Event {
+        private final long time;
+        private final Level level;
+        private final String thread;
+        private final String context;
+        private final String message;
+        private final Throwable error;
+
+        private Event(long time, Level level, String thread, String context, String message, Throwable error) {
+            this.time = time;
+            this.level = level;
+            this.thread = thread;
+            this.context = context;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    // context of a thread, rendered once when it changes instead of on every event
+    private static class Context {
+        private final Map<String, String> values = new LinkedHashMap<>();
+        private String rendered = "";
+
+        private void put(String key, String value) {
+            if (value == null) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                text.append(" [").append(entry.getKey()).append('=').append(entry.getValue()).append(']');
+            }
+            rendered = text.toString();
+        }
+    }
+
+    // logs each line written to it, buffered per thread so lines of different threads don't mix
+    private static class LineOutputStream extends OutputStream {
+        private final Level level;
+        private final ThreadLocal<ByteArrayOutputStream> line = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+        private LineOutputStream(Level level) {
+            this.level = level;
+        }
+
+        @Override
+        public void write(int b) {
+            ByteArrayOutputStream buffer = line.get();
+            if (b == '\n') {
+                String text = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+                buffer.reset();
+                log(level, text.endsWith("\r") ? text.substring(0, text.length() - 1) : text, null);
+            } else {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package db.framework.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed feature files cached across runs
+ * <p>
+ * Parsing gherkin is the slow part of startup on large feature trees. The json model of every parsed
+ * feature is kept in target/gherkin-cache, named after the sha256 of the feature path and content, so a
+ * feature is only parsed again when it changes. Features missing from the cache are parsed in parallel.
+ * </p>
+ */
+public class FeatureCache {
+
+    private static final int VERSION = 1;
+    static final File CACHE_DIR = new File("target/gherkin-cache");
+
+    private FeatureCache() {
+    }
+
+    /**
+     * Loads the json model of several feature files
+     *
+     * @param paths feature file paths, duplicates are loaded once
+     * @return path =&gt; list of features as produced by {@link Utils#gherkinToJson(boolean, String)}, in path order
+     */
+    public static Map<String, ArrayList<Map>> loadAll(Collection<String> paths) {
+        Map<String, ArrayList<Map>> loaded = new ConcurrentHashMap<>();
+        new ArrayList<>(new LinkedHashSet<>(paths)).parallelStream().forEach(path -> loaded.put(path, load(path)));
+        Map<String, ArrayList<Map>> ordered = new LinkedHashMap<>();
+        for (String path : paths) {
+            ordered.put(path, loaded.get(path));
+        }
+        return ordered;
+    }
+
+    /**
+     * Loads the json model of a feature file, from the cache if the file didn't change
+     *
+     * @param path feature file path
+     * @return list of features as produced by {@link Utils#gherkinToJson(boolean, String)}
+     */
+    @SuppressWarnings("unchecked")
+    public static ArrayList<Map> load(String path) {
+        File cached = null;
+        try {
+            cached = cacheFile(path);
+            if (cached.exists()) {
+                try (Reader reader = Files.newBufferedReader(cached.toPath(), StandardCharsets.UTF_8)) {
+                    return new Gson().fromJson(reader, ArrayList.class);
+                } catch (IOException | JsonSyntaxException e) {
+                    System.err.println("-->Ignoring unreadable cached feature " + cached.getPath() + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            // missing or unreadable file: gherkinToJson reports it
+        }
+
+        String json = Utils.gherkinToJson(false, path);
+        ArrayList<Map> features;
+        try {
+            features = new Gson().fromJson(json, ArrayList.class);
+        } catch (JsonSyntaxException jex) {
+            System.err.println("--> Failed to parse : " + path);
+            System.err.println("--> json :\n\n" + json);
+            System.err.println();
+            throw jex;
+        }
+        if (cached != null) {
+            store(cached, json);
+        }
+        return features;
+    }
+
+    // writes the json through a temp file so parallel runs never read a partial file
+    private static void store(File cached, String json) {
+        try {
+            if (!CACHE_DIR.exists() && !CACHE_DIR.mkdirs() && !CACHE_DIR.exists()) {
+                throw new IOException("Unable to create " + CACHE_DIR.getPath());
+            }
+            File temp = File.createTempFile(cached.getName(), ".tmp", CACHE_DIR);
+            try {
+                Files.write(temp.toPath(), json.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            // drop models of older versions of the same feature
+            String prefix = cached.getName().substring(0, cached.getName().lastIndexOf('-') + 1);
+            File[] stale = CACHE_DIR.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".json") &&
+                    !name.equals(cached.getName()));
+            if (stale != null) {
+                for (File file : stale) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("-->Unable to cache feature " + cached.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    // cache file of a feature: <file name>-<path hash>-<content hash>.json
+    private static File cacheFile(String path) throws IOException {
+        byte[] content = Files.readAllBytes(new File(path.trim()).toPath());
+        String pathHash = sha256(path.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+        MessageDigest digest = digest();
+        digest.update((VERSION + ":" + path + ":").getBytes(StandardCharsets.UTF_8));
+        String contentHash = hex(digest.digest(content)).substring(0, 24);
+        String name = new File(path.trim()).getName().replaceAll("[^A-Za-z0-9_.]", "_");
+        return new File(CACHE_DIR, name + "-" + pathHash + "-" + contentHash + ".json");
+    }
+
+    private static String sha256(byte[] data) throws IOException {
+        return hex(digest().digest(data));
+    }
+
+    private static MessageDigest digest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -5,6 +5,8 @@ import net.masterthought.cucumber.ReportBuilder;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class GenerateReport {
@@ -12,10 +14,18 @@ public class GenerateReport {
     public GenerateReport() {}
 
     public static synchronized void GenerateMasterthoughtReport(){
+        GenerateMasterthoughtReport(Collections.singletonList("cucumber.json"));
+    }
+
+    /**
+     * Generates the masterthought report in target from cucumber json files, for example the shards of a
+     * run merged by {@link CucumberJsonMerger}
+     *
+     * @param jsonFiles cucumber json files
+     */
+    public static synchronized void GenerateMasterthoughtReport(List<String> jsonFiles){
         try{
             File reportOutputDirectory = new File("target");
-            List<String> jsonFiles = new ArrayList<>();
-            jsonFiles.add("cucumber.json");
 
             String jenkinsBasePath = "";
             String projectName = "DB-Tester";
@@ -32,37 +42,13 @@ public class GenerateReport {
             configuration.setParallelTesting(parallelTesting);
             configuration.setJenkinsBasePath(jenkinsBasePath);
             configuration.setRunWithJenkins(runWithJenkins);
-            ReportBuilder reportBuilder = new ReportBuilder(jsonFiles, configuration);
+            ReportBuilder reportBuilder = new ReportBuilder(new ArrayList<>(jsonFiles), configuration);
             reportBuilder.generateReports();
         }catch(Exception e){
             e.printStackTrace();
         }
     }
     public static void main(String args[]) {
-        try {
-            File reportOutputDirectory = new File("target");
-            List<String> jsonFiles = new ArrayList<>();
-            jsonFiles.add("cucumber.json");
-
-            String jenkinsBasePath = "";
-            String projectName = "DB-Tester";
-            boolean skippedFails = true;
-            boolean pendingFails = false;
-            boolean undefinedFails = true;
-            boolean missingFails = true;
-            boolean runWithJenkins = false;
-            boolean parallelTesting = false;
-
-            Configuration configuration = new Configuration(reportOutputDirectory, projectName);
-
-            configuration.setStatusFlags(skippedFails, pendingFails, undefinedFails, missingFails);
-            configuration.setParallelTesting(parallelTesting);
-            configuration.setJenkinsBasePath(jenkinsBasePath);
-            configuration.setRunWithJenkins(runWithJenkins);
-            ReportBuilder reportBuilder = new ReportBuilder(jsonFiles, configuration);
-            reportBuilder.generateReports();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        GenerateMasterthoughtReport(args.length > 0 ? Arrays.asList(args) : Collections.singletonList("cucumber.json"));
     }
 }
@@ -0,0 +1,381 @@
+package db.framework.utils;
+
+import db.framework.runner.MainRunner;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records what each scenario touches and selects the scenarios affected by a change
+ * <p>
+ * While a scenario runs, every page or panel element it looks up ("page:home#username") and every step class
+ * it matches ("step:Sample") is recorded. The records of the last run of each scenario are kept in the
+ * "impact_index" env variable file, default target/impact-index.tsv.
+ * </p>
+ * With "impact_base" set to a git ref, only the scenarios affected by the changes since that ref are run:
+ * scenarios of changed feature files, scenarios that looked up a changed key of a page or panel json (or of a
+ * page including that panel) and scenarios using a changed step class. Scenarios without a record always run.
+ * Any other changed file can affect every scenario, so everything runs. Untracked files count as changed.
+ */
+public class ImpactRecorder {
+
+    private static final String PAGE = "page:";
+    private static final String STEP = "step:";
+    // element key standing for the whole page, when its includes changed or it can't be compared
+    private static final String ANY_KEY = "*";
+
+    private static final ThreadLocal<Set<String>> current = new ThreadLocal<>();
+    private static final Map<String, Set<String>> recorded = new ConcurrentHashMap<>();
+
+    private ImpactRecorder() {
+    }
+
+    /**
+     * Starts recording a scenario on the current thread
+     *
+     * @param uri  feature file path as run by cucumber
+     * @param line line of the scenario or example row
+     */
+    public static void startScenario(String uri, int line) {
+        Set<String> touched = ConcurrentHashMap.newKeySet();
+        recorded.put(relativize(uri) + ":" + line, touched);
+        current.set(touched);
+    }
+
+    /**
+     * Stops recording the scenario of the current thread
+     */
+    public static void endScenario() {
+        current.remove();
+    }
+
+    /**
+     * Records a page or panel element lookup
+     *
+     * @param pagePath page path or name, only its last part is used: "pages.home" and "home" are the same page
+     * @param element  element name
+     */
+    public static void page(String pagePath, String element) {
+        Set<String> touched = current.get();
+        if (touched != null && pagePath != null && element != null) {
+            touched.add(PAGE + pagePath.substring(pagePath.lastIndexOf('.') + 1) + "#" + element);
+        }
+    }
+
+    /**
+     * Records a step definition match
+     *
+     * @param location step definition location as "Class.method(args)"
+     */
+    public static void step(String location) {
+        Set<String> touched = current.get();
+        if (touched == null || location == null) {
+            return;
+        }
+        int argsIndex = location.indexOf('(');
+        String method = argsIndex == -1 ? location : location.substring(0, argsIndex);
+        int methodIndex = method.lastIndexOf('.');
+        if (methodIndex > 0) {
+            String className = method.substring(0, methodIndex);
+            touched.add(STEP + className.substring(className.lastIndexOf('.') + 1));
+        }
+    }
+
+    /**
+     * Saves the records of this run into the index, replacing older records of the same scenarios
+     */
+    public static void save() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> index = load();
+        recorded.forEach((scenario, touched) -> index.put(scenario, new TreeSet<>(touched)));
+        File file = indexFile();
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+                throw new IOException("Unable to create " + dir.getPath());
+            }
+            File temp = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                    writer.write("# scenario\ttouched pages and steps\n");
+                    for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                        writer.write(entry.getKey() + "\t" + String.join(" ", entry.getValue()) + "\n");
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("-->Unable to save impact index " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Selects the scenarios affected by the changes since a git ref
+     *
+     * @param scenarios scenario locations "path:line"
+     * @param base      git ref to compare the working tree to
+     * @return affected scenarios in their original order, all of them if the impact of a change is unknown
+     */
+    public static List<String> affected(List<String> scenarios, String base) {
+        String diff = git("diff", "--name-only", "--relative", base);
+        // new files aren't in the diff until they are added to git
+        String untracked = git("ls-files", "--others", "--exclude-standard");
+        if (diff == null || untracked == null) {
+            System.err.println("-->Unable to list changes since " + base + ", running all scenarios");
+            return scenarios;
+        }
+        List<String> changedFiles = new ArrayList<>();
+        for (String line : (diff + "\n" + untracked).split("\r?\n")) {
+            if (!line.trim().isEmpty()) {
+                changedFiles.add(line.trim());
+            }
+        }
+        Set<String> changedFeatures = new HashSet<>();
+        Set<String> changedItems = new HashSet<>();
+        Map<String, Set<String>> includedBy = null;
+        for (String changed : changedFiles) {
+            String path = relativize(changed);
+            String name = new File(path).getName();
+            if (path.endsWith(".feature")) {
+                changedFeatures.add(path);
+            } else if (path.endsWith(".json") && path.contains("resources/elements/")) {
+                if (includedBy == null) {
+                    includedBy = includedBy();
+                }
+                String page = name.substring(0, name.length() - ".json".length());
+                Set<String> keys = changedKeys(base, changed);
+                for (String affectedPage : including(page, includedBy)) {
+                    for (String key : keys) {
+                        changedItems.add(PAGE + affectedPage + "#" + key);
+                    }
+                }
+            } else if (path.endsWith(".java") && path.contains("/steps/")) {
+                changedItems.add(STEP + name.substring(0, name.length() - ".java".length()));
+            } else if (!path.endsWith(".md")) {
+                System.out.println("Impact of " + path + " is unknown, running all scenarios");
+                return scenarios;
+            }
+        }
+
+        Map<String, Set<String>> index = load();
+        // records are made per example row, a scenario outline owns the rows up to the next scenario
+        Map<String, TreeMap<Integer, String>> byFeature = new HashMap<>();
+        for (String scenario : scenarios) {
+            int lineIndex = scenario.lastIndexOf(':');
+            byFeature.computeIfAbsent(relativize(scenario.substring(0, lineIndex)), k -> new TreeMap<>())
+                    .put(Utils.parseInt(scenario.substring(lineIndex + 1), 0), scenario);
+        }
+        Set<String> hasRecord = new HashSet<>();
+        Set<String> selected = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            int lineIndex = entry.getKey().lastIndexOf(':');
+            TreeMap<Integer, String> lines = byFeature.get(entry.getKey().substring(0, lineIndex));
+            Map.Entry<Integer, String> owner = lines == null ? null :
+                    lines.floorEntry(Utils.parseInt(entry.getKey().substring(lineIndex + 1), 0));
+            if (owner == null) {
+                continue;
+            }
+            hasRecord.add(owner.getValue());
+            for (String item : entry.getValue()) {
+                if (changedItems.contains(item) || (item.startsWith(PAGE) &&
+                        changedItems.contains(item.substring(0, item.indexOf('#') + 1) + ANY_KEY))) {
+                    selected.add(owner.getValue());
+                    break;
+                }
+            }
+        }
+
+        List<String> affected = new ArrayList<>();
+        int unrecorded = 0;
+        for (String scenario : scenarios) {
+            String feature = relativize(scenario.substring(0, scenario.lastIndexOf(':')));
+            if (!hasRecord.contains(scenario)) {
+                unrecorded++;
+                affected.add(scenario);
+            } else if (selected.contains(scenario) || changedFeatures.contains(feature)) {
+                affected.add(scenario);
+            }
+        }
+        System.out.println("Impact of " + changedFiles.size() + " changed files since " + base + ": " + affected.size() +
+                " of " + scenarios.size() + " scenarios (" + unrecorded + " never recorded)");
+        return affected;
+    }
+
+    // keys of a page or panel json that differ from the base version
+    private static Set<String> changedKeys(String base, String path) {
+        JSONObject before = parse(git("show", base + ":./" + path));
+        File file = new File(path);
+        JSONObject after = null;
+        if (file.exists()) {
+            try {
+                after = parse(Utils.readTextFile(file));
+            } catch (IOException e) {
+                // compared as missing
+            }
+        }
+        Set<String> keys = new HashSet<>();
+        if (before == null || after == null) {
+            // added, deleted or unreadable file: any lookup of the page is affected
+            keys.add(ANY_KEY);
+            return keys;
+        }
+        Set<String> names = new HashSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String name : names) {
+            Object oldValue = before.opt(name);
+            Object newValue = after.opt(name);
+            if (oldValue == null || newValue == null || !String.valueOf(oldValue).equals(String.valueOf(newValue))) {
+                keys.add(name.equals("include") ? ANY_KEY : name);
+            }
+        }
+        return keys;
+    }
+
+    // page or panel => pages and panels that include it
+    private static Map<String, Set<String>> includedBy() {
+        Map<String, Set<String>> includedBy = new HashMap<>();
+        for (File elementDir : PageUtils.getElementDirs()) {
+            for (String type : new String[]{"pages", "panels"}) {
+                for (List<File> files : PageFileIndex.index(new File(elementDir, type)).values()) {
+                    for (File file : files) {
+                        if (!file.getName().endsWith(".json")) {
+                            continue;
+                        }
+                        JSONObject json;
+                        try {
+                            json = parse(Utils.readTextFile(file));
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        JSONArray includes = json == null ? null : json.optJSONArray("include");
+                        for (int i = 0; includes != null && i < includes.length(); i++) {
+                            String panel = includes.optString(i, "").replaceFirst("^panels?\\.", "");
+                            String name = file.getName();
+                            includedBy.computeIfAbsent(panel, k -> new HashSet<>())
+                                    .add(name.substring(0, name.length() - ".json".length()));
+                        }
+                    }
+                }
+            }
+        }
+        return includedBy;
+    }
+
+    // the page itself and every page including it, directly or through other panels
+    private static Set<String> including(String page, Map<String, Set<String>> includedBy) {
+        Set<String> pages = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(page);
+        while (!pending.isEmpty()) {
+            String next = pending.poll();
+            if (pages.add(next)) {
+                pending.addAll(includedBy.getOrDefault(next, Collections.emptySet()));
+            }
+        }
+        return pages;
+    }
+
+    private static Map<String, Set<String>> load() {
+        Map<String, Set<String>> index = new TreeMap<>();
+        File file = indexFile();
+        if (!file.exists()) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 2);
+                if (line.startsWith("#") || fields.length < 2) {
+                    continue;
+                }
+                index.put(fields[0], new TreeSet<>(Arrays.asList(fields[1].trim().split(" +"))));
+            }
+        } catch (IOException e) {
+            System.err.println("-->Unable to read impact index " + file.getPath() + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    private static File indexFile() {
+        String path = MainRunner.getEnvOrExParam("impact_index");
+        return new File(path == null || path.isEmpty() ? "target/impact-index.tsv" : path);
+    }
+
+    private static JSONObject parse(String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // path relative to the working directory, as feature paths are given to the run
+    private static String relativize(String path) {
+        String relative = path.replace('\\', '/');
+        String cwd = new File("").getAbsolutePath().replace('\\', '/') + "/";
+        if (relative.startsWith(cwd)) {
+            relative = relative.substring(cwd.length());
+        }
+        if (MainRunner.workspace != null && !MainRunner.workspace.equals("./") && relative.startsWith(MainRunner.workspace)) {
+            relative = relative.substring(MainRunner.workspace.length());
+        }
+        while (relative.startsWith("./")) {
+            relative = relative.substring(2);
+        }
+        return relative;
+    }
+
+    // output of a git command, null if it failed
+    private static String git(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        File errors = null;
+        try {
+            // stderr goes to a file so a chatty git can't block on a full pipe while stdout is read
+            errors = File.createTempFile("impact-git", ".err");
+            Process process = new ProcessBuilder(command).redirectError(errors).start();
+            process.getOutputStream().close();
+            String output = read(process.getInputStream());
+            return process.waitFor() == 0 ? output : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (errors != null && !errors.delete()) {
+                errors.deleteOnExit();
+            }
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,222 @@
+package db.framework.utils;
+
+import db.framework.interactions.Elements;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openqa.selenium.By;
+import org.openqa.selenium.support.pagefactory.ByAll;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Index of every element defined in the page and panel JSON files, built once from
+ * "resources/elements" of the project and shared directories.
+ * <p>
+ * Elements are indexed as "page_name.element_name" with their parsed locators and a ready to use By selector.
+ * Keys of included panels are indexed under the including page, keys of the page itself win over panel keys
+ * and project keys win over shared keys, same as the lookup done by {@link PageUtils}.
+ * Panels are also indexed as "panel.panel_name.element_name" so panel keys don't mix with page keys.
+ * </p>
+ */
+public class LocatorIndex {
+
+    private static volatile Map<String, Entry> index;
+
+    private LocatorIndex() {
+    }
+
+    /**
+     * Finds an element in the index
+     *
+     * @param elementKey String selector in format "page_name.element_name" or "panel.panel_name.element_name"
+     * @return indexed element or null if the key is not defined in any element file
+     */
+    public static Entry find(String elementKey) {
+        int elementIndex = elementKey.lastIndexOf('.');
+        if (elementIndex < 1) {
+            return null;
+        }
+        int pageIndex = elementKey.lastIndexOf('.', elementIndex - 1);
+        String key = elementKey.substring(pageIndex + 1);
+        ImpactRecorder.page(elementKey.substring(pageIndex + 1, elementIndex), elementKey.substring(elementIndex + 1));
+        String prefix = elementKey.substring(0, pageIndex + 1);
+        if (prefix.equals("panel.") || prefix.endsWith(".panel.")) {
+            // panel keys first, page key with the same name only if the panel doesn't define it
+            Entry entry = getIndex().get("panel." + key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return getIndex().get(key);
+    }
+
+    /**
+     * Builds the index if it's not built yet
+     */
+    public static void build() {
+        getIndex();
+    }
+
+    /**
+     * Drops the index, it will be rebuilt on next lookup
+     */
+    public static void invalidate() {
+        index = null;
+    }
+
+    private static Map<String, Entry> getIndex() {
+        Map<String, Entry> current = index;
+        if (current == null) {
+            synchronized (LocatorIndex.class) {
+                current = index;
+                if (current == null) {
+                    long ts = System.currentTimeMillis();
+                    current = Collections.unmodifiableMap(load());
+                    index = current;
+                    System.out.println("Locator index: " + current.size() + " elements in " +
+                            Utils.toDuration(System.currentTimeMillis() - ts));
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Map<String, Entry> load() {
+        List<File> elementDirs = PageUtils.getElementDirs();
+        HashMap<String, Entry> entries = new HashMap<>();
+        for (File elementDir : elementDirs) {
+            Map<String, File> pages = listJsonFiles(new File(elementDir, "pages"));
+            Map<String, File> panels = listJsonFiles(new File(elementDir, "panels"));
+            HashMap<File, JSONObject> parsed = new HashMap<>();
+            for (Map.Entry<String, File> page : pages.entrySet()) {
+                addPage(entries, page.getKey(), flatten(page.getValue(), panels, parsed, new HashSet<>()));
+            }
+            for (Map.Entry<String, File> panel : panels.entrySet()) {
+                Map<String, String> values = flatten(panel.getValue(), panels, parsed, new HashSet<>());
+                addPage(entries, "panel." + panel.getKey(), values);
+                addPage(entries, panel.getKey(), values);
+            }
+        }
+        return entries;
+    }
+
+    private static void addPage(HashMap<String, Entry> entries, String pageName, Map<String, String> values) {
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String key = pageName + "." + value.getKey();
+            if (!entries.containsKey(key)) {
+                entries.put(key, new Entry(key, value.getValue()));
+            }
+        }
+    }
+
+    // collect the string values of a page and all of its included panels, page values first
+    private static Map<String, String> flatten(File file, Map<String, File> panels,
+                                               HashMap<File, JSONObject> parsed, Set<File> visited) {
+        LinkedHashMap<String, String> values = new LinkedHashMap<>();
+        if (!visited.add(file)) {
+            return values;
+        }
+        JSONObject pageJson = parsed.computeIfAbsent(file, LocatorIndex::parse);
+        if (pageJson == null) {
+            return values;
+        }
+        for (String key : pageJson.keySet()) {
+            Object value = pageJson.get(key);
+            if (value instanceof String) {
+                values.put(key, (String) value);
+            }
+        }
+        JSONArray includes = pageJson.optJSONArray("include");
+        if (includes == null) {
+            return values;
+        }
+        for (int i = 0; i < includes.length(); i++) {
+            String include = includes.optString(i, "");
+            File panel = panels.get(include.replaceFirst("^panels?\\.", ""));
+            if (panel == null) {
+                System.err.println("-->Locator index: include '" + include + "' not found for " + file.getPath());
+                continue;
+            }
+            flatten(panel, panels, parsed, visited).forEach(values::putIfAbsent);
+        }
+        return values;
+    }
+
+    private static JSONObject parse(File file) {
+        if (file.length() == 0) {
+            return null;
+        }
+        try {
+            return new JSONObject(Utils.readTextFile(file));
+        } catch (IOException | JSONException e) {
+            System.err.println("-->Error parsing json at LocatorIndex for page: " + file.getAbsolutePath());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // page name => file, first file found wins when names are duplicated
+    private static Map<String, File> listJsonFiles(File dir) {
+        HashMap<String, File> files = new HashMap<>();
+        for (Map.Entry<String, List<File>> entry : PageFileIndex.index(dir).entrySet()) {
+            String fileName = entry.getKey();
+            if (!fileName.endsWith(".json")) {
+                continue;
+            }
+            List<File> found = entry.getValue();
+            if (found.size() > 1) {
+                System.err.println("-->Locator index: duplicate element files " + found);
+            }
+            files.put(fileName.substring(0, fileName.length() - ".json".length()), found.get(0));
+        }
+        return files;
+    }
+
+    /**
+     * Parsed element definition
+     */
+    public static class Entry {
+        private final List<String> locators;
+        private final List<String> values;
+        private final By by;
+
+        private Entry(String elementKey, String value) {
+            PageElement element = new PageElement(elementKey, value);
+            locators = Collections.unmodifiableList(element.elementLocators);
+            values = Collections.unmodifiableList(element.elementValues);
+            if (!locators.isEmpty() && locators.size() == values.size()) {
+                By[] bys = new By[locators.size()];
+                for (int i = 0; i < bys.length; i++) {
+                    bys[i] = Elements.findLocatorMethod(locators.get(i), values.get(i));
+                }
+                by = new ByAll(bys);
+            } else {
+                by = null;
+            }
+        }
+
+        /**
+         * @return locator strategies of the element (id, cssSelector...)
+         */
+        public List<String> getLocators() {
+            return locators;
+        }
+
+        /**
+         * @return values of the element, one for each locator
+         */
+        public List<String> getValues() {
+            return values;
+        }
+
+        /**
+         * @return selector matching any of the element locators, null if element has no valid locator
+         */
+        public By getBy() {
+            return by;
+        }
+    }
+}
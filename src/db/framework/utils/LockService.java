@@ -0,0 +1,251 @@
+package db.framework.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.FileLockInterruptionException;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named, fair, blocking locks shared by the workers of a run and by other test processes on the same host
+ * <p>
+ * Inside the JVM a lock is a fair semaphore, so waiters are served in order and the next one wakes as soon
+ * as the lock is released. The holder also locks a file in the temp directory (db-locks/name.lock) which
+ * makes other processes wait in the OS until the file lock is released.
+ * </p>
+ * Usage:
+ * <pre>
+ * try (LockService.Lease lease = LockService.acquire("my_account", 60000)) {
+ *     if (lease != null) { ... }
+ * }
+ * </pre>
+ */
+public class LockService {
+
+    private static final File LOCK_DIR = new File(System.getProperty("java.io.tmpdir"), "db-locks");
+    private static final Map<String, NamedLock> locks = new ConcurrentHashMap<>();
+    private static final ScheduledThreadPoolExecutor alarms = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "lock-service-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // cancelled alarms would otherwise stay queued until their delay runs out
+        alarms.setRemoveOnCancelPolicy(true);
+    }
+
+    private LockService() {
+    }
+
+    /**
+     * Waits for a lock
+     *
+     * @param name          lock name
+     * @param timeoutMillis max time to wait
+     * @return lease to release the lock with, null if the lock wasn't acquired in time or the thread was interrupted
+     */
+    public static Lease acquire(String name, long timeoutMillis) {
+        NamedLock lock = locks.computeIfAbsent(name, NamedLock::new);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!lock.permit.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                lock.timeouts.increment();
+                System.err.println("-->LockService: timed out waiting for lock " + name + ": " + Utils.toDuration(timeoutMillis));
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        FileChannel channel = null;
+        FileLock fileLock = null;
+        try {
+            channel = FileChannel.open(lock.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            fileLock = lockFile(channel, deadline - System.nanoTime());
+            if (fileLock == null) {
+                System.err.println("-->LockService: timed out waiting for lock " + name + " held by another process");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("-->LockService: unable to lock " + lock.file.getPath() + ": " + e.getMessage());
+        }
+        if (fileLock == null) {
+            closeQuietly(channel);
+            lock.permit.release();
+            lock.timeouts.increment();
+            return null;
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lock.acquisitions.increment();
+        lock.totalWait.add(waited);
+        lock.maxWait.accumulateAndGet(waited, Math::max);
+        return new Lease(lock, channel, fileLock, waited, lock.permit.getQueueLength());
+    }
+
+    /**
+     * @param name lock name
+     * @return number of threads of this JVM waiting for the lock
+     */
+    public static int getQueueLength(String name) {
+        NamedLock lock = locks.get(name);
+        return lock == null ? 0 : lock.permit.getQueueLength();
+    }
+
+    /**
+     * @return acquisitions, wait times and queue length of every lock used in this JVM, empty if none
+     */
+    public static String stats() {
+        StringBuilder stats = new StringBuilder();
+        for (NamedLock lock : new TreeMap<>(locks).values()) {
+            long count = lock.acquisitions.sum();
+            stats.append(stats.length() == 0 ? "" : "\n").append("lock ").append(lock.name).append(": ")
+                    .append(count).append(" acquired, ").append(lock.timeouts.sum()).append(" timed out, ")
+                    .append(count == 0 ? 0 : lock.totalWait.sum() / count).append(" ms average wait, ")
+                    .append(lock.maxWait.get()).append(" ms max wait, ")
+                    .append(lock.permit.getQueueLength()).append(" waiting");
+        }
+        return stats.toString();
+    }
+
+    // locks the file, blocking in the OS until the other process releases it or the time is up
+    private static FileLock lockFile(FileChannel channel, long timeoutNanos) throws IOException {
+        FileLock fileLock = channel.tryLock();
+        if (fileLock != null || timeoutNanos <= 0) {
+            return fileLock;
+        }
+        Alarm alarm = new Alarm(Thread.currentThread());
+        ScheduledFuture<?> timeout = alarms.schedule(alarm, timeoutNanos, TimeUnit.NANOSECONDS);
+        try {
+            return channel.lock();
+        } catch (ClosedByInterruptException | FileLockInterruptionException e) {
+            return null;
+        } finally {
+            timeout.cancel(false);
+            if (alarm.finish()) {
+                // the interrupt was ours, not the caller's
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Held lock, release it exactly once
+     */
+    public static class Lease implements AutoCloseable {
+        private final NamedLock lock;
+        private final FileChannel channel;
+        private final FileLock fileLock;
+        private final long waitMillis;
+        private final int queued;
+        private boolean released = false;
+
+        private Lease(NamedLock lock, FileChannel channel, FileLock fileLock, long waitMillis, int queued) {
+            this.lock = lock;
+            this.channel = channel;
+            this.fileLock = fileLock;
+            this.waitMillis = waitMillis;
+            this.queued = queued;
+        }
+
+        /**
+         * @return time waited for the lock in millis
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        /**
+         * @return number of threads of this JVM that were waiting for the lock when it was acquired
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * Releases the lock, the next waiter gets it right away
+         */
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                fileLock.release();
+            } catch (IOException e) {
+                System.err.println("-->LockService: unable to release " + lock.file.getPath() + ": " + e.getMessage());
+            } finally {
+                closeQuietly(channel);
+                lock.permit.release();
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    private static class NamedLock {
+        private final String name;
+        private final File file;
+        private final Semaphore permit = new Semaphore(1, true);
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder totalWait = new LongAdder();
+        private final AtomicLong maxWait = new AtomicLong();
+
+        private NamedLock(String name) {
+            this.name = name;
+            if (!LOCK_DIR.exists() && !LOCK_DIR.mkdirs() && !LOCK_DIR.exists()) {
+                System.err.println("-->LockService: unable to create " + LOCK_DIR.getPath());
+            }
+            this.file = new File(LOCK_DIR, name.replaceAll("[^A-Za-z0-9_.-]", "_") + ".lock");
+        }
+    }
+
+    // interrupts a thread blocked on a file lock when its time is up, unless it finished first
+    private static class Alarm implements Runnable {
+        private final Thread waiter;
+        private boolean finished = false;
+        private boolean fired = false;
+
+        private Alarm(Thread waiter) {
+            this.waiter = waiter;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!finished) {
+                fired = true;
+                waiter.interrupt();
+            }
+        }
+
+        private synchronized boolean finish() {
+            finished = true;
+            return fired;
+        }
+    }
+}
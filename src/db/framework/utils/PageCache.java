@@ -0,0 +1,213 @@
+package db.framework.utils;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Thread safe cache of loaded page JSON data keyed by page path ("pages.home")
+ * <p>
+ * Reads don't lock, each page is loaded at most once. Pages without any element file are cached too
+ * so they are not searched again. With {@link #watch(List)} the cache is cleared whenever an element file changes.
+ * </p>
+ */
+public class PageCache {
+
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Function<String, Page> loader;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private Thread watcher;
+
+    /**
+     * Creates a page cache
+     *
+     * @param loader loads a page from its element files, returns {@link Page#MISSING} if there is no file
+     */
+    public PageCache(Function<String, Page> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Gets a page, loading it if it's not cached yet
+     *
+     * @param pagePath page path as in "pages.home"
+     * @return cached page, {@link Page#MISSING} if the page has no element file
+     */
+    public Page get(String pagePath) {
+        Page page = pages.get(pagePath);
+        if (page != null) {
+            hits.increment();
+            return page;
+        }
+        return pages.computeIfAbsent(pagePath, key -> {
+            misses.increment();
+            long ts = System.nanoTime();
+            try {
+                return loader.apply(key);
+            } finally {
+                loadNanos.add(System.nanoTime() - ts);
+            }
+        });
+    }
+
+    /**
+     * Gets a page only if it's already cached
+     *
+     * @param pagePath page path as in "pages.home"
+     * @return cached page or null
+     */
+    public Page peek(String pagePath) {
+        return pages.get(pagePath);
+    }
+
+    /**
+     * @return all cached pages
+     */
+    public Map<String, Page> entries() {
+        return pages;
+    }
+
+    /**
+     * Drops all cached pages
+     */
+    public void invalidateAll() {
+        pages.clear();
+    }
+
+    /**
+     * @return number of lookups served from the cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that loaded a page
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return total time spent loading pages in nanoseconds
+     */
+    public long loadTimeNanos() {
+        return loadNanos.sum();
+    }
+
+    /**
+     * @return cache statistics in a printable format
+     */
+    public String stats() {
+        return "page cache: " + pages.size() + " pages, " + hits() + " hits, " + misses() + " misses, " +
+                loadTimeNanos() / 1000000 + " ms loading";
+    }
+
+    /**
+     * Starts watching element directories, any change clears this cache and the file and locator indexes
+     *
+     * @param dirs directories to watch including their subdirectories
+     */
+    public synchronized void watch(List<File> dirs) {
+        if (watcher != null) {
+            return;
+        }
+        final WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (File dir : dirs) {
+                register(watchService, dir.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("-->PageCache: unable to watch element files: " + e.getMessage());
+            return;
+        }
+        watcher = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == ENTRY_CREATE) {
+                        Path created = dir.resolve((Path) event.context());
+                        if (Files.isDirectory(created)) {
+                            try {
+                                register(watchService, created);
+                            } catch (IOException e) {
+                                System.err.println("-->PageCache: unable to watch " + created + ": " + e.getMessage());
+                            }
+                        }
+                    }
+                    System.out.println("...PageCache: " + event.kind().name() + " " + dir.resolve((Path) event.context()));
+                }
+                key.reset();
+                invalidateAll();
+                PageFileIndex.invalidate();
+                LocatorIndex.invalidate();
+            }
+        }, "page-cache-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static void register(WatchService watchService, Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * JSON data of a page from the project and the shared element files
+     */
+    public static class Page {
+        /**
+         * Page without any element file
+         */
+        public static final Page MISSING = new Page(null, null);
+
+        private final JSONObject project;
+        private final JSONObject shared;
+
+        public Page(JSONObject project, JSONObject shared) {
+            this.project = project;
+            this.shared = shared;
+        }
+
+        /**
+         * @return page data from project element files or null
+         */
+        public JSONObject getProject() {
+            return project;
+        }
+
+        /**
+         * @return page data from shared element files or null
+         */
+        public JSONObject getShared() {
+            return shared;
+        }
+    }
+}
@@ -24,7 +24,21 @@ public class PageElement {
         elementKey = stringName;
 
         parseKey();
-        parseValue(PageUtils.findPageElement(this));
+        // findPageElement parses the value into this element
+        PageUtils.findPageElement(this);
+    }
+
+    /**
+     * setup page element data from an already known value
+     *
+     * @param stringName in format home.logo = home.logo or panel.home.logo
+     * @param value      element value in format 'id~ b_id || class~ b_class'
+     */
+    public PageElement(String stringName, String value) {
+        elementKey = stringName;
+
+        parseKey();
+        parseValue(value);
     }
 
     /**
@@ -0,0 +1,81 @@
+package db.framework.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the files under a resource directory by file name. Each directory is walked once,
+ * lookups afterwards don't touch the file system.
+ */
+public class PageFileIndex {
+
+    private static final Map<Path, Map<String, List<File>>> directories = new ConcurrentHashMap<>();
+
+    private PageFileIndex() {
+    }
+
+    /**
+     * Finds all files with a given name under a directory and its subdirectories
+     *
+     * @param dir      directory to search in
+     * @param fileName name of the file, including extension
+     * @return files found sorted by path, empty if none was found or directory doesn't exist
+     */
+    public static List<File> find(File dir, String fileName) {
+        List<File> files = index(dir).get(fileName);
+        return files == null ? Collections.emptyList() : files;
+    }
+
+    /**
+     * Gets the index of a directory
+     *
+     * @param dir directory to index
+     * @return file name => files with that name sorted by path
+     */
+    public static Map<String, List<File>> index(File dir) {
+        return directories.computeIfAbsent(dir.toPath().toAbsolutePath().normalize(), PageFileIndex::walk);
+    }
+
+    /**
+     * Drops all directory indexes, directories are walked again on next lookup
+     */
+    public static void invalidate() {
+        directories.clear();
+    }
+
+    private static Map<String, List<File>> walk(Path dir) {
+        HashMap<String, List<File>> files = new HashMap<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        files.computeIfAbsent(file.getFileName().toString(), k -> new ArrayList<>()).add(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.err.println("-->PageFileIndex: unable to read " + file + ": " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("-->PageFileIndex: unable to list " + dir + ": " + e.getMessage());
+        }
+        HashMap<String, List<File>> sorted = new HashMap<>();
+        files.forEach((name, list) -> {
+            Collections.sort(list);
+            sorted.put(name, Collections.unmodifiableList(list));
+        });
+        return Collections.unmodifiableMap(sorted);
+    }
+}
@@ -8,7 +8,8 @@ import org.junit.Assert;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -18,21 +19,56 @@ import static db.framework.utils.Utils.log;
  * This class pulls & manages data from page & panel JSON files
  */
 public class PageUtils {
-    protected static HashMap<String, JSONObject> cachePagesProject = new HashMap<>();
-    protected static HashMap<String, JSONObject> cachePagesShared = new HashMap<>();
+    private static final PageCache pageCache = new PageCache(PageUtils::readPage);
 
     /**
      * Prints out the values of all saved pages/panels
      */
     public static void displayPageJSONHash() {
-        for (Map.Entry mapEntry : cachePagesProject.entrySet()) {
-            System.out.println("project page cache: key: '" + mapEntry.getKey() + "' Value: '" + mapEntry.getValue() + "'");
+        for (Map.Entry<String, PageCache.Page> mapEntry : pageCache.entries().entrySet()) {
+            if (mapEntry.getValue().getProject() != null)
+                System.out.println("project page cache: key: '" + mapEntry.getKey() + "' Value: '" + mapEntry.getValue().getProject() + "'");
         }
-        for (Map.Entry mapEntry : cachePagesProject.entrySet()) {
-            System.out.println("shared page cache: key: '" + mapEntry.getKey() + "' Value: '" + mapEntry.getValue() + "'");
+        for (Map.Entry<String, PageCache.Page> mapEntry : pageCache.entries().entrySet()) {
+            if (mapEntry.getValue().getShared() != null)
+                System.out.println("shared page cache: key: '" + mapEntry.getKey() + "' Value: '" + mapEntry.getValue().getShared() + "'");
         }
     }
 
+    /**
+     * Gets the cache of loaded pages
+     *
+     * @return page cache
+     */
+    public static PageCache getPageCache() {
+        return pageCache;
+    }
+
+    /**
+     * Gets the "resources/elements" directories, project directory first
+     *
+     * @return list of element directories
+     */
+    public static List<File> getElementDirs() {
+        String resRepoPath = "src/";
+        if (!new File(resRepoPath).exists())
+            resRepoPath = "./";
+
+        List<File> elementDirs = new ArrayList<>();
+        if (MainRunner.projectDir != null) {
+            elementDirs.add(new File(resRepoPath + MainRunner.projectDir.replace(".", "/") + "/resources/elements"));
+        }
+        elementDirs.add(new File(resRepoPath + "db/shared/resources/elements"));
+        return elementDirs;
+    }
+
+    /**
+     * Clears cached pages whenever an element file is changed, created or deleted
+     */
+    public static void watchElementDirs() {
+        pageCache.watch(getElementDirs());
+    }
+
     /**
      * Loads a JSON object from file into memory
      * <p>
@@ -42,176 +78,76 @@ public class PageUtils {
      * @param pagePath name of page to load
      */
     public static void loadPageJSON(String pagePath) {
-        if (cachePagesProject.get(pagePath) != null || cachePagesShared.get(pagePath) != null)
-            return;
+        pageCache.get(pagePath);
+    }
 
+    // read the project and shared element files of a page
+    private static PageCache.Page readPage(String pagePath) {
         String resRepoPath = "src/";
         if (!new File(resRepoPath).exists())
             resRepoPath = "./";
         String path = pagePath.replace(".page.", ".pages.").replace(".panel.", ".panels.").replace(".", "/");
+        // included panels live in elements/panels no matter which page includes them
+        if (pagePath.contains(".panel."))
+            path = "panels/" + pagePath.substring(pagePath.lastIndexOf('.') + 1);
         String resPath = "/resources/elements/" + path + ".json";
+        JSONObject project = null;
 
         // project elements first
         if (MainRunner.projectDir != null) {
             path = resRepoPath + MainRunner.projectDir.replace(".", "/") + resPath;
-            loadOnePageJSONFile(pagePath, path, "project");
+            project = loadOnePageJSONFile(path);
 
             // also load panel elements
-            if (pagePath.contains(".page.")) {
+            if (project == null && pagePath.contains(".page.")) {
                 path = path.replace("/pages/", "/panels/");
-                loadOnePageJSONFile(pagePath, path, "project");
+                project = loadOnePageJSONFile(path);
             }
         }
 
         // shared elements next
         path = resRepoPath + "db/shared" + resPath;
-        loadOnePageJSONFile(pagePath, path, "shared");
+        JSONObject shared = loadOnePageJSONFile(path);
 
         // also load panel elements
-        if (pagePath.contains(".page.")) {
+        if (shared == null && pagePath.contains(".page.")) {
             path = path.replace("/pages/", "/panels/");
-            loadOnePageJSONFile(pagePath, path, "shared");
-        }
-
-        // project elements first
-        if (MainRunner.projectDir != null) {
-            path = resRepoPath + MainRunner.projectDir.replace(".", "/") + resPath;
-            loadOnePageJSONFile(pagePath, path, "project");
-
-            // also load panel elements
-            if (pagePath.contains(".page.")) {
-                path = path.replace("/pages/", "/panels/");
-                loadOnePageJSONFile(pagePath, path, "project");
-            }
+            shared = loadOnePageJSONFile(path);
         }
 
-        // shared elements next
-        path = resRepoPath + "db/shared" + resPath;
-        loadOnePageJSONFile(pagePath, path, "shared");
-
-        // also load panel elements
-        if (pagePath.contains(".page.")) {
-            path = path.replace("/pages/", "/panels/");
-            loadOnePageJSONFile(pagePath, path, "shared");
-        }
+        if (project == null && shared == null)
+            return PageCache.Page.MISSING;
+        return new PageCache.Page(project, shared);
     }
 
-    private static boolean loadOnePageJSONFile(String pagePath, String filePath, String cache) {
+    private static JSONObject loadOnePageJSONFile(String filePath) {
         File f = new File(filePath);
         if (f.exists() && !f.isDirectory()) {
-            loadPageJsonFiles(pagePath, f, cache);
-            return true;
+            return readPageJsonFile(f);
         }
 
-        // find file recursively under the directory
+        // find file under the directory and its subdirectories
         String fName = f.getName();
         File dir = f.getParentFile();
-        f = findPage(dir, fName);
-
-        if (f != null && f.exists() && !f.isDirectory()) {
-            int fileCount = countFoundPage(dir, fName);
-            if (fileCount < 1)
-                return false;
-            if (fileCount == 1) {
-                loadPageJsonFiles(pagePath, f, cache);
-                return true;
-            } else {
-                Assert.fail("Resource Error: Multiple '" + fName + "'(total: " + fileCount + ") " +
-                        " files found under '" + dir.getAbsolutePath() + "'");
-            }
-        }
-        return false;
-    }
-
-    // recursively checks all subdirectories for a file matching pageName
-    private static File findPage(File dir, String pageName) {
-        File[] subDirs = dir.listFiles(File::isDirectory);
-        File[] resources = dir.listFiles(File::isFile);
-        if (resources != null) {
-            for (File resource : resources) {
-                if (resource.getName().equals(pageName))
-                    return resource;
-            }
-        }
-        if (subDirs == null)
+        List<File> found = PageFileIndex.find(dir, fName);
+        if (found.isEmpty())
             return null;
-        File resource = null;
-        for (File subDir : subDirs) {
-            resource = findPage(subDir, pageName);
-            if (resource != null && resource.getName().equals(pageName))
-                break;
-        }
-        return resource;
-    }
-
-    // recursively checks all subdirectories for a file matching pageName
-    private static int countFoundPage(File dir, String pageName) {
-        int count = 0;
-        File[] subDirs = dir.listFiles(File::isDirectory);
-        File[] resources = dir.listFiles(File::isFile);
-        if (resources != null) {
-            for (File resource : resources) {
-                if (resource.getName().equals(pageName))
-                    count++;
-            }
-        }
-        if (subDirs == null)
-            return count;
-
-        for (File subDir : subDirs) {
-            int subCount = countFoundPage(subDir, pageName);
-            count += subCount;
+        if (found.size() == 1) {
+            return readPageJsonFile(found.get(0));
         }
-        return count;
+        Assert.fail("Resource Error: Multiple '" + fName + "'(total: " + found.size() + ") " +
+                " files found under '" + dir.getAbsolutePath() + "'");
+        return null;
     }
 
-    private static void loadPageJsonFiles(String pagePath, File file, String cache) {
-        if (cache.equals("project")) {
-            if (cachePagesProject.get(pagePath) != null)
-                return;
-        } else {
-            if (cachePagesShared.get(pagePath) != null)
-                return;
-        }
-
-        JSONObject pageJson;
+    // included panel files are loaded when a lookup reaches them
+    private static JSONObject readPageJsonFile(File file) {
         try {
-            pageJson = new JSONObject(Utils.readTextFile(file));
+            return new JSONObject(Utils.readTextFile(file));
         } catch (IOException | JSONException e) {
             System.err.println("-->Error parsing json at PageUtils.loadPageJSON() for page: " + file.getAbsolutePath());
             e.printStackTrace();
-            return;
-        }
-
-        // put new DataFile entry
-        if (cache.equals("project"))
-            cachePagesProject.put(pagePath, pageJson);
-        else
-            cachePagesShared.put(pagePath, pageJson);
-
-        // process included Panel files
-        JSONArray includedDataFiles = null;
-        try {
-            includedDataFiles = pageJson.getJSONArray("include");
-        } catch (JSONException e) {
-            // no 'include'
-        }
-
-        if (includedDataFiles == null)
-            return;
-
-        for (int i = 0; i < includedDataFiles.length(); i++) {
-            try {
-                String panelName = includedDataFiles.getString(i);
-                if (panelName.contains("panel.")) {
-                    String panel_name = panelName.replace("panel.", "");
-                    String[] parts = pagePath.split(Pattern.quote("."));
-                    String panel_path = parts[0] + "." + parts[1] + ".panel." + panel_name;
-                    loadPageJSON(panel_path);
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+            return null;
         }
     }
 
@@ -280,12 +216,10 @@ public class PageUtils {
     }
 
     private static String findPageJSONValueInternal(String pagePath, String elementName, String cache) {
+        ImpactRecorder.page(pagePath, elementName);
         String result = null;
-        JSONObject pageData;
-        if (cache.equals("project"))
-            pageData = cachePagesProject.get(pagePath);
-        else
-            pageData = cachePagesShared.get(pagePath);
+        PageCache.Page page = pageCache.get(pagePath);
+        JSONObject pageData = cache.equals("project") ? page.getProject() : page.getShared();
 
         try {
             result = (String) pageData.get(elementName);
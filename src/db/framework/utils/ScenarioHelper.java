@@ -11,12 +11,19 @@ import java.util.List;
 
 public class ScenarioHelper {
 
-    public static int outlineCount = 1;
-    protected static ScenarioImpl scenario = null;
-    private static LinkedTreeMap scenarioInfo = new LinkedTreeMap();
-    private static int stepOffset = 1;
-    private static int backgroundStepCount = 0;
+    /**
+     * Scenario state of the current thread. Each parallel worker runs its own scenarios.
+     */
+    private static final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
 
+    /**
+     * Gets the example row index of the current scenario outline
+     *
+     * @return outline example index, starting at 1
+     */
+    public static int getOutlineCount() {
+        return state.get().outlineCount;
+    }
 
     /**
      * Initializes a scenario
@@ -24,26 +31,28 @@ public class ScenarioHelper {
      * @param s scenario to initialize
      */
     public static void init(Scenario s) {
-        if (scenario != null && s.getName().equals(scenario.getName())) {
-            outlineCount++;
+        State current = state.get();
+        if (current.scenario != null && s.getName().equals(current.scenario.getName())) {
+            current.outlineCount++;
         } else {
-            outlineCount = 1;
+            current.outlineCount = 1;
         }
-        scenario = (ScenarioImpl) s;
+        current.scenario = (ScenarioImpl) s;
+        DBLog.putContext("scenario", s.getName());
         for (Object o : MainRunner.features.values()) {
             if (o instanceof LinkedTreeMap) {
                 LinkedTreeMap savedScenario = (LinkedTreeMap) o;
-                if (scenario.getName().equals(savedScenario.get("name"))) {
-                    scenarioInfo = savedScenario;
+                if (current.scenario.getName().equals(savedScenario.get("name"))) {
+                    current.scenarioInfo = savedScenario;
                     break;
                 }
             }
         }
-        MainRunner.URLStack = new ArrayList<>();
+        MainRunner.resetURLStack();
     }
 
     public static void incrementBackgroundStepCount() {
-        backgroundStepCount++;
+        state.get().backgroundStepCount++;
     }
 
     public static boolean isBackground() {
@@ -62,7 +71,8 @@ public class ScenarioHelper {
      * @return the index of the current step in the scenario
      */
     public static int getScenarioIndex() {
-        return scenario.getStepResuls().size() - stepOffset - backgroundStepCount;
+        State current = state.get();
+        return current.scenario.getStepResuls().size() - current.stepOffset - current.backgroundStepCount;
     }
 
     /**
@@ -74,7 +84,7 @@ public class ScenarioHelper {
      * </p>
      */
     public static void resetScenarioOffset() {
-        stepOffset = 1;
+        state.get().stepOffset = 1;
     }
 
     /**
@@ -86,7 +96,7 @@ public class ScenarioHelper {
      * </p>
      */
     public static void incrementStepIndexOffset() {
-        stepOffset++;
+        state.get().stepOffset++;
     }
 
     /**
@@ -95,7 +105,7 @@ public class ScenarioHelper {
      * @return true if current scenario is a scenario outline
      */
     public static boolean isScenarioOutline() {
-        ArrayList examples = (ArrayList) scenarioInfo.get("examples");
+        ArrayList examples = (ArrayList) state.get().scenarioInfo.get("examples");
         return examples != null;
     }
 
@@ -105,12 +115,13 @@ public class ScenarioHelper {
      * @return A string with the current examples or null if current scenario is not an outline.
      */
     public static String getScenarioExamples() {
-        ArrayList examples = (ArrayList) scenarioInfo.get("examples");
+        State current = state.get();
+        ArrayList examples = (ArrayList) current.scenarioInfo.get("examples");
         if (examples == null) {
             return null;
         }
         ArrayList rows = (ArrayList) ((LinkedTreeMap) examples.get(0)).get("rows");
-        LinkedTreeMap row = (LinkedTreeMap) rows.get(outlineCount);
+        LinkedTreeMap row = (LinkedTreeMap) rows.get(current.outlineCount);
         ArrayList values = (ArrayList) row.get("cells");
         return Utils.listToString(values, " | ", null);
     }
@@ -122,6 +133,7 @@ public class ScenarioHelper {
      * @return the name of the step at stepIndex
      */
     public static String getScenarioStepName(int stepIndex) {
+        LinkedTreeMap scenarioInfo = state.get().scenarioInfo;
         if (scenarioInfo == null) {
             System.err.println("Can't get scenario step name - scenario not initialized");
             return null;
@@ -137,7 +149,7 @@ public class ScenarioHelper {
      * @return scenario information
      */
     public static LinkedTreeMap getScenarioInfo() {
-        return scenarioInfo;
+        return state.get().scenarioInfo;
     }
 
     /**
@@ -150,7 +162,7 @@ public class ScenarioHelper {
         if (step == -1) {
             step = getScenarioIndex();
         }
-        return scenario.getStepResuls().get(step);
+        return state.get().scenario.getStepResuls().get(step);
     }
 
     /**
@@ -173,7 +185,7 @@ public class ScenarioHelper {
         if (step == -1) {
             step = getScenarioIndex();
         }
-        List<Result> steps = scenario.getStepResuls();
+        List<Result> steps = state.get().scenario.getStepResuls();
         return steps.remove(step);
     }
 
@@ -192,7 +204,7 @@ public class ScenarioHelper {
      * @return the failed step Result
      */
     public static Result getFailedStepResult() {
-        List<Result> results = scenario.getStepResuls();
+        List<Result> results = state.get().scenario.getStepResuls();
         for (Result result : results) {
             if (!result.getStatus().equals("passed")) {
                 return result;
@@ -207,7 +219,7 @@ public class ScenarioHelper {
      * @return true if last scenario passed
      */
     public static boolean isScenarioPassed() {
-        List<Result> results = scenario.getStepResuls();
+        List<Result> results = state.get().scenario.getStepResuls();
         for (Result result : results) {
             if (!result.getStatus().equals("passed")) {
                 return false;
@@ -215,4 +227,15 @@ public class ScenarioHelper {
         }
         return true;
     }
+
+    /**
+     * Scenario bookkeeping of one thread
+     */
+    private static class State {
+        private int outlineCount = 1;
+        private ScenarioImpl scenario = null;
+        private LinkedTreeMap scenarioInfo = new LinkedTreeMap();
+        private int stepOffset = 1;
+        private int backgroundStepCount = 0;
+    }
 }
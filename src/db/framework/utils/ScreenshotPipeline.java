@@ -0,0 +1,174 @@
+package db.framework.utils;
+
+import db.framework.runner.MainRunner;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes screenshots and report attachments in the background
+ * <p>
+ * The scenario thread only takes the screenshot, re-encoding and writing the file is done by a small pool
+ * of writer threads. When the queue is full the submitting thread writes the file itself, which limits the
+ * memory held by pending screenshots. {@link #flush()} waits for all pending files.
+ * </p>
+ * Settings:
+ * <ul>
+ * <li>screenshot_format: "png" (default) to keep the browser image, "jpg" to re-encode it smaller</li>
+ * <li>screenshot_quality: jpg quality from 1 to 100, default 80</li>
+ * <li>screenshot_threads: number of writer threads, default 2</li>
+ * <li>screenshot_queue: number of files waiting to be written before the caller writes itself, default 16</li>
+ * </ul>
+ */
+public class ScreenshotPipeline {
+
+    private static final String format = "jpg".equalsIgnoreCase(MainRunner.getEnvOrExParam("screenshot_format")) ? "jpg" : "png";
+    private static final float quality = Math.min(100, Math.max(1, Utils.parseInt(MainRunner.getEnvOrExParam("screenshot_quality"), 80))) / 100f;
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final Object lock = new Object();
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        int threads = Math.max(1, Utils.parseInt(MainRunner.getEnvOrExParam("screenshot_threads"), 2));
+        int queue = Math.max(1, Utils.parseInt(MainRunner.getEnvOrExParam("screenshot_queue"), 16));
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread thread = new Thread(r, "screenshot-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private ScreenshotPipeline() {
+    }
+
+    /**
+     * @return extension of the screenshot files: "png" or "jpg"
+     */
+    public static String getFormat() {
+        return format;
+    }
+
+    /**
+     * Saves a screenshot taken by the browser
+     *
+     * @param png    screenshot as returned by the driver
+     * @param target file to write, its extension is replaced by the screenshot format
+     * @return file the screenshot is written to
+     */
+    public static File submitScreenshot(byte[] png, File target) {
+        File file = new File(target.getParentFile(), target.getName().replaceFirst("\\.[^.]*$", "") + "." + format);
+        submit(() -> {
+            if (format.equals("jpg")) {
+                writeJpg(png, file);
+            } else {
+                writeFile(png, file);
+            }
+        });
+        return file;
+    }
+
+    /**
+     * Writes data to a file as is
+     *
+     * @param data   file content
+     * @param target file to write
+     */
+    public static void submitFile(byte[] data, File target) {
+        submit(() -> writeFile(data, target));
+    }
+
+    /**
+     * Waits until all submitted files are written
+     */
+    public static void flush() {
+        synchronized (lock) {
+            while (pending.get() > 0) {
+                try {
+                    lock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void submit(IORunnable task) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("-->Unable to write screenshot: " + e.getMessage());
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    synchronized (lock) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    private static void writeFile(byte[] data, File file) throws IOException {
+        createParentDir(file);
+        if (!Utils.writeSmallBinaryFile(data, file)) {
+            throw new IOException("Unable to write " + file.getPath());
+        }
+    }
+
+    private static void writeJpg(byte[] png, File file) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException("Unsupported screenshot image for " + file.getPath());
+        }
+        // jpg has no alpha channel
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.createGraphics().drawImage(image, 0, 0, java.awt.Color.WHITE, null);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) {
+            writeFile(png, file);
+            return;
+        }
+        ImageWriter writer = writers.next();
+        createParentDir(file);
+        // the image stream doesn't truncate an existing file
+        Files.deleteIfExists(file.toPath());
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void createParentDir(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Unable to create " + dir.getPath());
+        }
+    }
+
+    @FunctionalInterface
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+}
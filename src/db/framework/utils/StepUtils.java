@@ -16,7 +16,6 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -237,7 +236,7 @@ public abstract class StepUtils {
      * @return the url of the current page
      */
     public static String url() {
-        return MainRunner.currentURL;
+        return MainRunner.getLastUrl();
     }
 
     /**
@@ -289,17 +288,18 @@ public abstract class StepUtils {
 
     /**
      * Captures the browser window and saves to a specified file name
+     * <p>
+     * Only the capture is done on the calling thread, the file is written by {@link ScreenshotPipeline}.
+     * </p>
      *
      * @param fileName file name to save screenshot as
+     * @return name of the saved file, its extension follows the "screenshot_format" setting
      */
-    public static void browserScreenCapture(String fileName) {
+    public static String browserScreenCapture(String fileName) {
         File imgFile = new File(MainRunner.logs + fileName);
         try {
-            File scrFile = ((TakesScreenshot) MainRunner.getWebDriver()).getScreenshotAs(OutputType.FILE);
-            boolean success = scrFile.renameTo(imgFile);
-            if (!success) {
-                System.err.println("Failed to rename screenshot file");
-            }
+            byte[] screenshot = ((TakesScreenshot) MainRunner.getWebDriver()).getScreenshotAs(OutputType.BYTES);
+            return ScreenshotPipeline.submitScreenshot(screenshot, imgFile).getName();
         } catch (Exception ex) {
             ex.printStackTrace();
             try {
@@ -309,6 +309,7 @@ public abstract class StepUtils {
                 System.out.println("Cannot desktop capture.");
             }
         }
+        return fileName;
     }
 
     /**
@@ -346,16 +347,16 @@ public abstract class StepUtils {
     /**
      * A class for creating and managing singleton scenarios and steps
      */
-    public static class SingletonScenario extends Thread {
+    public static class SingletonScenario {
         private final static String TAG_SINGLETON = "@singleton";
         private static final long TIMEOUT_DURATION = 20 * 50 * 60 * 1000;
-        private static final int PORT_SCENARIO = 9001;
-        private static final int PORT_STEP = 9002;
+        private static final String LOCK_SCENARIO = "singleton-scenario";
+        private static final String LOCK_STEP = "singleton-step";
         private static SingletonScenario m_singletonStep;
         private Scenario scenario;
         private String lockName;
-        private int lockType = PORT_SCENARIO;
-        private ServerSocket lockSocket;
+        private String lockType = LOCK_SCENARIO;
+        private LockService.Lease lease;
 
         /**
          * Creates a singleton scenario
@@ -370,8 +371,7 @@ public abstract class StepUtils {
                     !this.scenario.getSourceTagNames().contains(TAG_SINGLETON))
                 return;
 
-            this.start();
-            this.join();
+            this.lock();
         }
 
         /**
@@ -382,9 +382,8 @@ public abstract class StepUtils {
          */
         public SingletonScenario(String stepName) throws Exception {
             this.lockName = stepName;
-            this.lockType = PORT_STEP;
-            this.start();
-            this.join();
+            this.lockType = LOCK_STEP;
+            this.lock();
         }
 
         /**
@@ -409,43 +408,31 @@ public abstract class StepUtils {
         }
 
         /**
-         * Runs the current singleton scenario
+         * Waits until no other singleton scenario (or step) runs in this or another process on this host
          */
-        public void run() {
-            long ts = System.currentTimeMillis();
-            boolean running;
-            while (running = (System.currentTimeMillis() - ts < TIMEOUT_DURATION)) {
-                try {
-                    lockSocket = new ServerSocket(lockType);
-                    if (lockType == PORT_SCENARIO)
-                        System.err.println("...SingletonScenario: SCENARIO locked: " + this.lockName);
-                    else
-                        System.err.println("...SingletonScenario: STEP locked: " + this.lockName);
-                    break;
-                } catch (Exception ex) {
-                    //ignore
-                }
-                Utils.threadSleep(10 * 1000, "...SingletonScenario:waiting for lock:" + this.lockName + "...");
+        private void lock() {
+            int queued = LockService.getQueueLength(lockType);
+            if (queued > 0) {
+                System.err.println("...SingletonScenario:waiting for lock:" + this.lockName + ": " + queued + " ahead");
             }
-            if (!running)
+            lease = LockService.acquire(lockType, TIMEOUT_DURATION);
+            if (lease == null) {
                 System.err.println("-->Exhausted SingletonScenario:waiting for lock:" + Utils.toDuration(TIMEOUT_DURATION));
+                return;
+            }
+            System.err.println("...SingletonScenario: " + (lockType.equals(LOCK_SCENARIO) ? "SCENARIO" : "STEP") +
+                    " locked: " + this.lockName + " after " + Utils.toDuration(lease.getWaitMillis()) +
+                    ", " + lease.getQueued() + " waiting");
         }
 
         /**
          * Releases the current singleton scenario
          */
         public void release() {
-            try {
-                if (this.lockSocket != null)
-                    this.lockSocket.close();
-                else
-                    return;
-
-                if (this.isAlive())
-                    this.interrupt();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+            if (this.lease == null)
+                return;
+            this.lease.release();
+            this.lease = null;
             System.err.println("...SingletonScenario: lock is released: " + this.lockName);
         }
     }
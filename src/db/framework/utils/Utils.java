@@ -37,7 +37,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -47,8 +46,16 @@ import java.util.concurrent.TimeUnit;
 @SuppressWarnings("deprecation")
 public class Utils {
 
-    public static PrintStream errLog = null;
-    public static PrintStream infoLog = null;
+    /**
+     * @deprecated use {@link DBLog#error(String)}, lines printed here are logged asynchronously
+     */
+    @Deprecated
+    public static final PrintStream errLog = DBLog.printStream(DBLog.Level.ERROR);
+    /**
+     * @deprecated use {@link DBLog#info(String)}, lines printed here are logged asynchronously
+     */
+    @Deprecated
+    public static final PrintStream infoLog = DBLog.printStream(DBLog.Level.INFO);
     public static Logger log = LoggerFactory.getLogger(Utils.class);
     // use these to redirect unneeded error output
     private static PrintStream originalErr = System.err;
@@ -380,17 +387,16 @@ public class Utils {
      */
     public static boolean threadSleep(long sleepTime, String msg) {
         Thread cur = Thread.currentThread();
-        initLogs();
         try {
             if (msg != null)
-                infoLog.println("--> Thread sleep: " + msg + ":id-" + cur.getId() + ":" + sleepTime);
+                DBLog.debug(() -> "--> Thread sleep: " + msg + ":id-" + cur.getId() + ":" + sleepTime);
             Thread.sleep(sleepTime);
             if (msg != null)
-                infoLog.println(new Date() + "--> Thread awake: " + msg + ":id-" + cur.getId() + ":normal");
+                DBLog.debug(() -> "--> Thread awake: " + msg + ":id-" + cur.getId() + ":normal");
             return false;
         } catch (InterruptedException e) {
             if (msg != null)
-                errLog.println(new Date() + "--> Thread awake: " + msg + ":id-" + cur.getId() + ":" + e.getMessage());
+                DBLog.warn("--> Thread awake: " + msg + ":id-" + cur.getId() + ":" + e.getMessage());
             return true;
         }
     }
@@ -728,35 +734,6 @@ public class Utils {
         }
     }
 
-    /**
-     * Initializes the PrintStream used to redirect any error message bloat
-     */
-    private static void initLogs() {
-        if (errLog == null || infoLog == null) {
-            try {
-                File errFile = new File(MainRunner.workspace + "logs/db-error.log");
-                File infoFile = new File(MainRunner.workspace + "logs/db-info.log");
-                createDirectory(MainRunner.workspace + "logs");
-                if (!errFile.exists()) {
-                    if (!errFile.createNewFile()) {
-                        System.err.println("Could not create error log file");
-                    }
-                }
-                if (!infoFile.exists()) {
-                    if (!infoFile.createNewFile()) {
-                        System.err.println("Could not create info log file");
-                    }
-                }
-                FileOutputStream errStream = new FileOutputStream(errFile);
-                FileOutputStream infoStream = new FileOutputStream(infoFile);
-                errLog = new PrintStream(errStream);
-                infoLog = new PrintStream(infoStream);
-            } catch (IOException e) {
-                System.err.println("Error while creating file: " + e);
-            }
-        }
-    }
-
     /**
      * Redirects System.out prints to the log files to avoid console clutter
      * <p>
@@ -765,13 +742,8 @@ public class Utils {
      * </p>
      */
     public static void redirectSOut() {
-        if (infoLog == null) {
-            initLogs();
-        }
-        if (infoLog != null) {
-            System.setOut(infoLog);
-            infoRedirectCalls++;
-        }
+        System.setOut(infoLog);
+        infoRedirectCalls++;
     }
 
     /**
@@ -780,15 +752,13 @@ public class Utils {
      * Maintains a call count with resetSErr so redirects/resets below
      * each other don't mess each other up.
      * </p>
+     *
+     * @deprecated System.err is global, redirecting it hides messages of other threads. Log with {@link DBLog}
      */
+    @Deprecated
     public static void redirectSErr() {
-        if (errLog == null) {
-            initLogs();
-        }
-        if (errLog != null) {
-            System.setErr(errLog);
-            errRedirectCalls++;
-        }
+        System.setErr(errLog);
+        errRedirectCalls++;
     }
 
     /**
@@ -797,7 +767,10 @@ public class Utils {
      * Maintains a call count with redirectSErr so redirects/resets below
      * each other don't mess each other up.
      * </p>
+     *
+     * @deprecated see {@link #redirectSErr()}
      */
+    @Deprecated
     public static void resetSErr() {
         errRedirectCalls--;
         if (errRedirectCalls < 0) {
@@ -2,6 +2,8 @@ package db.shared.resources.actions.page_object;
 
 import db.framework.utils.StepUtils;
 import db.shared.steps.DB_Tester;
+import db.shared.utils.database.utils.QueryRegistry;
+import db.shared.utils.database.utils.RecordReconciler;
 import org.junit.Assert;
 
 import java.util.*;
@@ -18,6 +20,15 @@ public class HomePage extends StepUtils {
     public static List<String> updated_user_info = new ArrayList<>(Arrays.asList(EditUsersPage.editedRecordInfo()));
     public static String record_id;
 
+    // columns of the home page table, followed by the update and remove links
+    private static final List<String> TABLE_COLUMNS = Arrays.asList("id", "first_name", "last_name", "email_id", "contact_no");
+    // header text of each table column, in TABLE_COLUMNS order
+    private static final List<String> TABLE_HEADERS = Arrays.asList("#", "First Name", "Last Name", "E - mail ID", "Contact No");
+    // columns of a record entered in the UI
+    private static final List<String> RECORD_COLUMNS = TABLE_COLUMNS.subList(1, TABLE_COLUMNS.size());
+    private static final int EMAIL_COLUMN = RECORD_COLUMNS.indexOf("email_id");
+    private static final int KEYS_PER_QUERY = 1000;
+
     public static void transactions(String transaction_type_btn) throws Throwable {
         switch (transaction_type_btn.toLowerCase()) {
             case "add users":
@@ -40,27 +51,7 @@ public class HomePage extends StepUtils {
     }
 
     public static void verifyAddedRecordsWithUI() throws Throwable {
-        List<String> ui_user_info = new ArrayList<String>(Arrays.asList());
-        int recordCount = findElements(element("home.table_row")).size();
-        for (int i = 1; i < recordCount; i++) {
-            String row_value = getIndexedText(element("home.table_row"), i);
-            ui_user_info.add(row_value);
-        }
-        ui_user_info.removeAll(Collections.singleton(""));
-        Iterator<String> ui_it = ui_user_info.iterator();
-        Iterator<String> inputted_it = inputted_user_info.iterator();
-        while (ui_it.hasNext()) {
-            String ui_record_value = ui_it.next();
-            while (inputted_it.hasNext()) {
-                String inputted_record_value = inputted_it.next();
-                if (ui_record_value.equals(inputted_record_value)) {
-                    System.out.print("UI verification successfully passed with inputted data values: [ " + ui_record_value + ", " + inputted_record_value + " ]" + "\n" + "");
-                    break;
-                } else {
-                    Assert.fail("UI verification failed for: [ " + ui_record_value + ", " + inputted_record_value + " ]" + "\n" + "");
-                }
-            }
-        }
+        verifyRecordWithUI(inputted_user_info, "inputted");
     }
 
     public static void removeRecordsFromDB() throws Throwable {
@@ -73,63 +64,85 @@ public class HomePage extends StepUtils {
     }
 
     public static void verifyAddedRecordsWithDB() throws Throwable {
-        List<String> customerInformationUI = HomePage.inputted_user_info;
-        Iterator<String> ui_it = customerInformationUI.iterator();
-        Iterator<String> db_it = DB_Tester.customerInformationDB.iterator();
-        while (ui_it.hasNext()) {
-            String ui_record_value = ui_it.next();
-            while (db_it.hasNext()) {
-                String db_record_value = db_it.next();
-                if (ui_record_value.equals(db_record_value)) {
-                    System.out.print("Backend verification successfully passed for data values: [ " + ui_record_value + ", " + db_record_value + " ]" + "\n" + "");
-                    break;
-                } else {
-                    Assert.fail("Backend verification failed for: [ " + ui_record_value + ", " + db_record_value + " ]" + "\n" + "");
-                }
+        verifyRecordWithDB(inputted_user_info, DB_Tester.customerInformationDB, "");
+    }
+
+    public static void verifyUpdatedRecordsWithUI() throws Throwable {
+        verifyRecordWithUI(updated_user_info, "updated");
+    }
+
+    public static void verifyEditedRecordsWithDB() throws Throwable {
+        verifyRecordWithDB(updated_user_info, DB_Tester.updatedCustomerInformationDB, "edited ");
+    }
+
+    /**
+     * Verifies every record of the home page table against the database, reading the table with one
+     * javascript call per page and the matching database rows with keyed queries
+     *
+     * @throws Throwable if the table and the database don't match
+     */
+    public static void verifyAllRecordsWithDB() throws Throwable {
+        Map<String, List<String>> ui = RecordReconciler.index(readTable(0), 0);
+        Map<String, List<String>> db = new HashMap<>(ui.size() * 2);
+        List<String> ids = new ArrayList<>(ui.keySet());
+        for (int i = 0; i < ids.size(); i += KEYS_PER_QUERY) {
+            List<String> chunk = ids.subList(i, Math.min(ids.size(), i + KEYS_PER_QUERY));
+            for (List<String> record : QueryRegistry.list("retrieve_customers_by_ids", row -> Arrays.asList(
+                    row.getString("id"), row.getString("first_name"), row.getString("last_name"),
+                    row.getString("email_id"), row.getString("contact_no")), chunk)) {
+                db.put(record.get(0), record);
             }
         }
+        RecordReconciler.Report report = RecordReconciler.reconcile(TABLE_COLUMNS, ui, db);
+        if (!report.matches(false)) {
+            Assert.fail("Backend verification failed for home page records: " + report);
+        }
+        System.out.print("Backend verification successfully passed for home page records: " + report + "\n");
     }
 
-    public static void verifyUpdatedRecordsWithUI() throws Throwable {
-        List<String> ui_user_info = new ArrayList<String>(Arrays.asList());
-        int recordCount = findElements(element("home.table_row")).size();
-        for (int i = 1; i < recordCount; i++) {
-            String row_value = getIndexedText(element("home.table_row"), i);
-            ui_user_info.add(row_value);
+    // checks that a record is displayed in the home page table, other records are ignored
+    private static void verifyRecordWithUI(List<String> record, String kind) {
+        Map<String, List<String>> expected = RecordReconciler.index(Collections.singletonList(record), EMAIL_COLUMN);
+        Map<String, List<String>> ui = RecordReconciler.index(readTable(1), EMAIL_COLUMN);
+        RecordReconciler.Report report = RecordReconciler.reconcile(RECORD_COLUMNS, expected, ui);
+        if (!report.matches(true)) {
+            Assert.fail("UI verification failed with " + kind + " data values " + record + ": " + report);
         }
-        ui_user_info.removeAll(Collections.singleton(""));
-        Iterator<String> ui_it = ui_user_info.iterator();
-        Iterator<String> updated_it = updated_user_info.iterator();
-        while (ui_it.hasNext()) {
-            String ui_record_value = ui_it.next();
-            while (updated_it.hasNext()) {
-                String updated_record_value = updated_it.next();
-                if (ui_record_value.equals(updated_record_value)) {
-                    System.out.print("UI verification successfully passed with updated data values: [ " + ui_record_value + ", " + updated_record_value + " ]" + "\n" + "");
-                    break;
-                } else {
-                    Assert.fail("UI verification failed for: [ " + ui_record_value + ", " + updated_record_value + " ]" + "\n" + "");
-                }
-            }
+        System.out.print("UI verification successfully passed with " + kind + " data values: " + record + "\n");
+    }
+
+    private static void verifyRecordWithDB(List<String> record, List<String> dbRecord, String kind) {
+        if (dbRecord == null) {
+            Assert.fail("ERROR-DATA: No database record to verify " + kind + "data values " + record);
+        }
+        RecordReconciler.Report report = RecordReconciler.reconcile(RECORD_COLUMNS,
+                RecordReconciler.index(Collections.singletonList(record), EMAIL_COLUMN),
+                RecordReconciler.index(Collections.singletonList(dbRecord), EMAIL_COLUMN));
+        if (!report.matches(false)) {
+            Assert.fail("Backend verification failed for " + kind + "data values " + record + ": " + report);
         }
+        System.out.print("Backend verification successfully passed for " + kind + "data values: " + record + "\n");
     }
 
-    public static void verifyEditedRecordsWithDB() throws Throwable {
-        List<String> editedCustomerInformationUI = HomePage.updated_user_info;
-        Iterator<String> edited_ui_it = editedCustomerInformationUI.iterator();
-        Iterator<String> edited_db_it = DB_Tester.updatedCustomerInformationDB.iterator();
-        while (edited_ui_it.hasNext()) {
-            String edited_ui_record_value = edited_ui_it.next();
-            while (edited_db_it.hasNext()) {
-                String edited_db_record_value = edited_db_it.next();
-                if (edited_ui_record_value.equals(edited_db_record_value)) {
-                    System.out.print("Backend verification successfully passed for edited data values: [ " + edited_ui_record_value + ", " + edited_db_record_value + " ]" + "\n" + "");
-                    break;
-                } else {
-                    Assert.fail("Backend verification failed for: [ " + edited_ui_record_value + ", " + edited_db_record_value + " ]" + "\n" + "");
+    // rows of all home page table pages from the given column on, without the "Nothing here..." row
+    private static List<List<String>> readTable(int firstColumn) {
+        List<String> headers = TABLE_HEADERS.subList(firstColumn, TABLE_HEADERS.size());
+        List<List<String>> rows = new ArrayList<>();
+        for (Map<String, String> row : scrapeTable("home.added_users_tbl", "home.pagination")) {
+            if (row.size() < TABLE_HEADERS.size()) {
+                continue;
+            }
+            List<String> cells = new ArrayList<>(headers.size());
+            for (String header : headers) {
+                String cell = row.get(header);
+                if (cell == null) {
+                    Assert.fail("ERROR: Home page table has no '" + header + "' column, found " + row.keySet());
                 }
+                cells.add(cell);
             }
+            rows.add(cells);
         }
+        return rows;
     }
 
 }
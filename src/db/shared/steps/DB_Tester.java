@@ -108,6 +108,11 @@ public class DB_Tester extends StepUtils {
         HomePage.verifyEditedRecordsWithDB();
     }
 
+    @Then("^I verify all home page records with backend record values$")
+    public void I_verify_all_home_page_records_with_backend_record_values() throws Throwable {
+        HomePage.verifyAllRecordsWithDB();
+    }
+
     @Then("^I verify whether the record deleted from backend$")
     public void I_verify_whether_the_record_deleted_from_backend() throws Throwable {
         String[] deletedCustomerInformation = CustomerService.verifyRecordDeleted();
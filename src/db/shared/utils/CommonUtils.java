@@ -2,21 +2,18 @@ package db.shared.utils;
 
 import com.github.javafaker.Faker;
 import db.framework.utils.StepUtils;
-import db.framework.utils.Utils;
-import jxl.read.biff.BiffException;
+import db.shared.utils.data.TestData;
+import db.shared.utils.database.utils.QueryRegistry;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -182,17 +179,11 @@ public abstract class CommonUtils extends StepUtils {
      * Method to return SQL Queries
      *
      * @return SQL queries as json object
+     * @deprecated use {@link QueryRegistry} to run the queries with bound parameters
      */
+    @Deprecated
     public static JSONObject getSqlQueries() {
-        File queries = new File(getResourceFile("queries.json"));
-        JSONObject jsonObject = null;
-        try {
-            String jsonTxt = Utils.readTextFile(queries);
-            jsonObject = new JSONObject(jsonTxt);
-        } catch (IOException | JSONException e) {
-            e.printStackTrace();
-        }
-        return jsonObject;
+        return QueryRegistry.toJSON();
     }
 
     /**
@@ -221,37 +212,22 @@ public abstract class CommonUtils extends StepUtils {
     /**
      * Method to read excel file
      *
-     * @return data from the excel sheet using jxl library
+     * @return all cell values of the first sheet of test_data.xls, row by row, numbers as "1234.0" and
+     * without formula cells
      */
-    public static List<String> getTestDataFromExcelSheet() throws IOException, BiffException {
-        FileInputStream inputStream = new FileInputStream(new File(getResourceFile("test_data.xls")));
-        Workbook workbook = new HSSFWorkbook(inputStream);
-        Sheet firstSheet = workbook.getSheetAt(0);
-        Iterator<Row> iterator = firstSheet.iterator();
-
-        while (iterator.hasNext()) {
-            Row nextRow = iterator.next();
-            Iterator<Cell> cellIterator = nextRow.cellIterator();
-
-            while (cellIterator.hasNext()) {
-                Cell cell = cellIterator.next();
-
-                switch (cell.getCellTypeEnum()) {
-                    case STRING:
-                        new_account_details.add(cell.getStringCellValue());
-                        break;
-                    case BOOLEAN:
-                        new_account_details.add(String.valueOf(cell.getBooleanCellValue()));
-                        break;
-                    case NUMERIC:
-                        new_account_details.add(String.valueOf(cell.getNumericCellValue()));
-                        break;
-                }
+    public static List<String> getTestDataFromExcelSheet() throws IOException {
+        List<String> values = new ArrayList<>();
+        try {
+            TestData data = TestData.open(new File(getResourceFile("test_data.xls")), null, true);
+            data.getColumns().stream().filter(cell -> !cell.isEmpty()).forEach(values::add);
+            for (int row = 0; row < data.size(); row++) {
+                data.cells(row).stream().filter(cell -> !cell.isEmpty()).forEach(values::add);
             }
+        } catch (RuntimeException e) {
+            throw new IOException(e.getMessage(), e.getCause() != null ? e.getCause() : e);
         }
-        workbook.close();
-        inputStream.close();
-        return new_account_details;
+        new_account_details = values;
+        return values;
     }
 
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package db.shared.utils;
 
+import cucumber.api.PendingException;
 import cucumber.api.Scenario;
 import cucumber.api.java.After;
 import cucumber.api.java.Before;
@@ -39,8 +40,12 @@ public class Hooks extends StepUtils {
         if (RunFeature.checkAborted()) {
             Assert.fail("Run has been aborted");
         }
+        if (MainRunner.failureLimitReached()) {
+            throw new PendingException("Skipped: " + MainRunner.maxFailures + " scenarios failed (max_failures)");
+        }
         // make sure driver is initialized
         MainRunner.getWebDriver();
+        MainRunner.PageHangWatchDog.progress();
 
         scenarioStartTime = System.currentTimeMillis();
         init(scenario);
@@ -67,8 +72,10 @@ public class Hooks extends StepUtils {
 
     @After
     public void afterScenario(Scenario scenario) {
+        MainRunner.PageHangWatchDog.progress();
         try {
             if (scenario.isFailed()) {
+                MainRunner.scenarioFailed();
                 Result result = getFailedStepResult();
                 String errorMsg = "Unknown";
                 if (result != null) {
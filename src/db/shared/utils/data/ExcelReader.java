@@ -0,0 +1,459 @@
+package db.shared.utils.data;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of an Excel sheet without loading the workbook in memory
+ * <p>
+ * .xls files are read with the POI event model and .xlsx files with the SAX sheet parser. The file is
+ * parsed by a background thread that hands rows over through a small bounded queue, so memory use
+ * doesn't depend on the sheet size. Empty rows are skipped. Close the stream (try-with-resources)
+ * to stop reading early.
+ * </p>
+ * Cells are read as the text shown by Excel, or with raw values as returned by the POI user model getters:
+ * numbers as {@code String.valueOf(double)} ("1234.0"), booleans as "true"/"false", formula and error cells
+ * left empty. The .xlsx parser only reports cell text, so for .xlsx files raw values only change numbers.
+ */
+public class ExcelReader {
+
+    private static final int QUEUE_SIZE = 256;
+
+    private ExcelReader() {
+    }
+
+    /**
+     * Reads the first sheet, using its first row as header
+     *
+     * @param file .xls or .xlsx file
+     * @return lazy stream of rows after the header
+     */
+    public static Stream<ExcelRow> rows(File file) {
+        return rows(file, 0, true);
+    }
+
+    /**
+     * Reads a sheet by name
+     *
+     * @param file      .xls or .xlsx file
+     * @param sheetName name of the sheet
+     * @param hasHeader true if the first row contains the column names
+     * @return lazy stream of rows (after the header)
+     */
+    public static Stream<ExcelRow> rows(File file, String sheetName, boolean hasHeader) {
+        return stream(file, new SheetSelector(-1, sheetName), hasHeader, false);
+    }
+
+    /**
+     * Reads a sheet by position
+     *
+     * @param file       .xls or .xlsx file
+     * @param sheetIndex 0 based position of the sheet
+     * @param hasHeader  true if the first row contains the column names
+     * @return lazy stream of rows (after the header)
+     */
+    public static Stream<ExcelRow> rows(File file, int sheetIndex, boolean hasHeader) {
+        return stream(file, new SheetSelector(sheetIndex, null), hasHeader, false);
+    }
+
+    /**
+     * Reads a sheet by position
+     *
+     * @param file       .xls or .xlsx file
+     * @param sheetIndex 0 based position of the sheet
+     * @param hasHeader  true if the first row contains the column names
+     * @param rawValues  true to read raw cell values instead of the text shown by Excel
+     * @return lazy stream of rows (after the header)
+     */
+    public static Stream<ExcelRow> rows(File file, int sheetIndex, boolean hasHeader, boolean rawValues) {
+        return stream(file, new SheetSelector(sheetIndex, null), hasHeader, rawValues);
+    }
+
+    /**
+     * Reads a sheet by name
+     *
+     * @param file      .xls or .xlsx file
+     * @param sheetName name of the sheet
+     * @param hasHeader true if the first row contains the column names
+     * @param rawValues true to read raw cell values instead of the text shown by Excel
+     * @return lazy stream of rows (after the header)
+     */
+    public static Stream<ExcelRow> rows(File file, String sheetName, boolean hasHeader, boolean rawValues) {
+        return stream(file, new SheetSelector(-1, sheetName), hasHeader, rawValues);
+    }
+
+    private static Stream<ExcelRow> stream(File file, SheetSelector sheet, boolean hasHeader, boolean rawValues) {
+        RowQueue queue = new RowQueue(file, sheet, hasHeader, rawValues);
+        Thread producer = new Thread(queue::produce, "excel-reader-" + file.getName());
+        producer.setDaemon(true);
+        producer.start();
+        return StreamSupport.stream(queue, false).onClose(queue::close);
+    }
+
+    private static boolean isXlsx(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".xlsx") || name.endsWith(".xlsm");
+    }
+
+    private static void readXlsx(File file, SheetSelector sheet, RowQueue queue) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int index = 0; sheets.hasNext(); index++) {
+                try (InputStream stream = sheets.next()) {
+                    if (sheet.matches(index, sheets.getSheetName())) {
+                        XMLReader parser = SAXHelper.newXMLReader();
+                        parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                                new XlsxSheetHandler(queue), queue.rawValues ? new RawFormatter() : new DataFormatter(), false));
+                        parser.parse(new InputSource(stream));
+                        return;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Sheet " + sheet + " not found in " + file.getPath());
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static void readXls(File file, SheetSelector sheet, RowQueue queue) throws Exception {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file, true)) {
+            XlsListener listener = new XlsListener(sheet, queue);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(new MissingRecordAwareHSSFListener(listener.formats));
+            new HSSFEventFactory().processWorkbookEvents(request, fs);
+            if (!listener.found) {
+                throw new IllegalArgumentException("Sheet " + sheet + " not found in " + file.getPath());
+            }
+        } catch (StopReading e) {
+            // selected sheet has been read or the stream was closed
+        }
+    }
+
+    // formats numbers like Cell.getNumericCellValue() converted with String.valueOf
+    private static class RawFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            return String.valueOf(value);
+        }
+    }
+
+    // sheet to read, by position or by name
+    private static class SheetSelector {
+        private final int index;
+        private final String name;
+
+        private SheetSelector(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        private boolean matches(int sheetIndex, String sheetName) {
+            return name != null ? name.equals(sheetName) : index == sheetIndex;
+        }
+
+        @Override
+        public String toString() {
+            return name != null ? "'" + name + "'" : "#" + index;
+        }
+    }
+
+    // thrown in the parser thread to stop parsing
+    private static class StopReading extends RuntimeException {
+        private StopReading() {
+            super(null, null, false, false);
+        }
+    }
+
+    // rows handed over from the parser thread to the stream
+    private static class RowQueue extends Spliterators.AbstractSpliterator<ExcelRow> {
+        private static final Object END = new Object();
+
+        private final File file;
+        private final SheetSelector sheet;
+        private final boolean hasHeader;
+        private final boolean rawValues;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private Map<String, Integer> header;
+        private volatile boolean closed = false;
+        private volatile Throwable error;
+        private boolean finished = false;
+
+        private RowQueue(File file, SheetSelector sheet, boolean hasHeader, boolean rawValues) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.file = file;
+            this.sheet = sheet;
+            this.hasHeader = hasHeader;
+            this.rawValues = rawValues;
+            this.header = hasHeader ? null : Collections.emptyMap();
+        }
+
+        private void produce() {
+            try {
+                if (isXlsx(file)) {
+                    readXlsx(file, sheet, this);
+                } else {
+                    readXls(file, sheet, this);
+                }
+            } catch (StopReading e) {
+                // stream was closed
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                try {
+                    put(END);
+                } catch (StopReading e) {
+                    // stream was closed
+                }
+            }
+        }
+
+        // called by the parser for each row
+        private void row(int rowNumber, List<String> cells) {
+            ExcelRow row = new ExcelRow(rowNumber, cells, header == null ? Collections.emptyMap() : header);
+            if (row.isEmpty()) {
+                return;
+            }
+            if (header == null) {
+                Map<String, Integer> columns = new LinkedHashMap<>();
+                for (int i = 0; i < cells.size(); i++) {
+                    String name = cells.get(i).trim();
+                    if (!name.isEmpty()) {
+                        columns.putIfAbsent(name, i);
+                    }
+                }
+                header = Collections.unmodifiableMap(columns);
+                return;
+            }
+            put(row);
+        }
+
+        private void put(Object item) {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        throw new StopReading();
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new StopReading();
+            }
+            if (closed) {
+                throw new StopReading();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ExcelRow> action) {
+            if (finished) {
+                return false;
+            }
+            Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted reading " + file.getPath(), e);
+            }
+            if (next == END) {
+                finished = true;
+                if (error != null) {
+                    throw new RuntimeException("Unable to read " + file.getPath() + ": " + error.getMessage(), error);
+                }
+                return false;
+            }
+            action.accept((ExcelRow) next);
+            return true;
+        }
+
+        private void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    // collects the cells of the selected sheet of an .xls file from its records
+    private static class XlsListener implements HSSFListener {
+        private final SheetSelector sheet;
+        private final RowQueue queue;
+        private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(this);
+        private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+        private BoundSheetRecord[] orderedSheets;
+        private SSTRecord strings;
+        private int sheetIndex = -1;
+        private boolean active = false;
+        private boolean found = false;
+        private boolean formulaString = false;
+        private int formulaColumn;
+        private List<String> cells = new ArrayList<>();
+
+        private XlsListener(SheetSelector sheet, RowQueue queue) {
+            this.sheet = sheet;
+            this.queue = queue;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    boundSheets.add((BoundSheetRecord) record);
+                    return;
+                case SSTRecord.sid:
+                    strings = (SSTRecord) record;
+                    return;
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        if (found) {
+                            throw new StopReading();
+                        }
+                        if (orderedSheets == null) {
+                            orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+                        }
+                        sheetIndex++;
+                        String name = sheetIndex < orderedSheets.length ? orderedSheets[sheetIndex].getSheetname() : null;
+                        active = found = sheet.matches(sheetIndex, name);
+                    }
+                    return;
+                case EOFRecord.sid:
+                    active = false;
+                    return;
+            }
+            if (!active) {
+                return;
+            }
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord label = (LabelSSTRecord) record;
+                    set(label.getColumn(), strings.getString(label.getSSTIndex()).toString());
+                    break;
+                case LabelRecord.sid:
+                    set(((LabelRecord) record).getColumn(), ((LabelRecord) record).getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    set(number.getColumn(), queue.rawValues ? String.valueOf(number.getValue()) : formats.formatNumberDateCell(number));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    if (boolErr.isBoolean()) {
+                        String value = String.valueOf(boolErr.getBooleanValue());
+                        set(boolErr.getColumn(), queue.rawValues ? value : value.toUpperCase());
+                    } else if (!queue.rawValues) {
+                        set(boolErr.getColumn(), "#ERROR");
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (queue.rawValues) {
+                        break;
+                    }
+                    if (formula.hasCachedResultString()) {
+                        // value is in the following string record
+                        formulaString = true;
+                        formulaColumn = formula.getColumn();
+                    } else {
+                        set(formula.getColumn(), formats.formatNumberDateCell(formula));
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (formulaString) {
+                        formulaString = false;
+                        set(formulaColumn, ((StringRecord) record).getString());
+                    }
+                    break;
+                default:
+                    if (record instanceof LastCellOfRowDummyRecord) {
+                        queue.row(((LastCellOfRowDummyRecord) record).getRow(), cells);
+                        cells = new ArrayList<>();
+                    }
+            }
+        }
+
+        private void set(int column, String value) {
+            while (cells.size() <= column) {
+                cells.add("");
+            }
+            cells.set(column, value == null ? "" : value);
+        }
+    }
+
+    // collects the cells of an .xlsx sheet from the SAX parser
+    private static class XlsxSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowQueue queue;
+        private List<String> cells = new ArrayList<>();
+
+        private XlsxSheetHandler(RowQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new ArrayList<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            queue.row(rowNum, cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+            while (cells.size() <= column) {
+                cells.add("");
+            }
+            cells.set(column, formattedValue == null ? "" : formattedValue);
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package db.shared.utils.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One row of an Excel sheet read by {@link ExcelReader}
+ * <p>
+ * Cell values are the formatted text shown by Excel, empty cells are empty strings. The header is shared
+ * by all rows of a sheet, values can be looked up by header name when the sheet has a header row.
+ * </p>
+ */
+public class ExcelRow {
+
+    private final int rowNumber;
+    private final List<String> cells;
+    private final Map<String, Integer> header;
+
+    ExcelRow(int rowNumber, List<String> cells, Map<String, Integer> header) {
+        this.rowNumber = rowNumber;
+        this.cells = cells;
+        this.header = header;
+    }
+
+    /**
+     * @return 0 based row number in the sheet
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @return cell values in column order
+     */
+    public List<String> getCells() {
+        return Collections.unmodifiableList(cells);
+    }
+
+    /**
+     * @param column 0 based column index
+     * @return cell value, empty if the cell is empty or beyond the last cell of the row
+     */
+    public String get(int column) {
+        return column < cells.size() ? cells.get(column) : "";
+    }
+
+    /**
+     * @param name column name in the header row
+     * @return cell value, empty if the cell is empty
+     * @throws IllegalArgumentException if the sheet has no such column
+     */
+    public String get(String name) {
+        Integer column = header.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("No column '" + name + "' in " + header.keySet());
+        }
+        return get(column);
+    }
+
+    /**
+     * @param name column name in the header row
+     * @return cell value as an int, null if the cell is empty
+     */
+    public Integer getInt(String name) {
+        String value = get(name).trim();
+        return value.isEmpty() ? null : (int) Double.parseDouble(value.replace(",", ""));
+    }
+
+    /**
+     * @param name column name in the header row
+     * @return cell value as a double, null if the cell is empty
+     */
+    public Double getDouble(String name) {
+        String value = get(name).trim();
+        return value.isEmpty() ? null : Double.parseDouble(value.replace(",", ""));
+    }
+
+    /**
+     * @param name column name in the header row
+     * @return true if the cell value is "true" (ignoring case)
+     */
+    public boolean getBoolean(String name) {
+        return Boolean.parseBoolean(get(name).trim());
+    }
+
+    /**
+     * @return true if all cells are empty
+     */
+    public boolean isEmpty() {
+        for (String cell : cells) {
+            if (!cell.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return column name =&gt; value map in header order
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> column : header.entrySet()) {
+            map.put(column.getKey(), get(column.getValue()));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return rowNumber + ": " + (header.isEmpty() ? cells.toString() : toMap().toString());
+    }
+}
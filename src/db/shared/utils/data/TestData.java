@@ -0,0 +1,250 @@
+package db.shared.utils.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key based lookups in test data sheets compiled by {@link TestDataCompiler}
+ * <p>
+ * The compiled file is memory mapped and read in place: a lookup hashes the key into the file's index and
+ * decodes only the cells it returns. Workers in the same JVM share one instance per sheet and separate
+ * processes share the OS page cache. POI is only used when a sheet has to be compiled.
+ * </p>
+ * Usage: {@code TestData.open("test_data_c.xlsx").get("Dasun", "last_name")}
+ */
+public class TestData {
+
+    private static final Map<String, TestData> opened = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final List<String> columns;
+    private final Map<String, Integer> columnIndex;
+    private final int rows;
+    private final int tableSize;
+    private final int indexStart;
+    private final int[] columnStarts;
+
+    private TestData(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.buffer = mapped.asReadOnlyBuffer();
+        }
+        if (buffer.getInt(0) != TestDataCompiler.MAGIC || buffer.getInt(4) != TestDataCompiler.VERSION) {
+            throw new IOException("Not a compiled test data file: " + file.getPath());
+        }
+        int columnCount = buffer.getInt(8);
+        this.rows = buffer.getInt(12);
+        this.tableSize = buffer.getInt(16);
+        List<String> names = new ArrayList<>(columnCount);
+        Map<String, Integer> index = new HashMap<>();
+        int position = 20;
+        for (int i = 0; i < columnCount; i++) {
+            int length = buffer.getShort(position) & 0xffff;
+            String name = decode(position + 2, length);
+            names.add(name);
+            index.putIfAbsent(name, i);
+            position += 2 + length;
+        }
+        this.columns = Collections.unmodifiableList(names);
+        this.columnIndex = index;
+        this.columnStarts = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnStarts[i] = buffer.getInt(position + 4 * i);
+        }
+        this.indexStart = position + 4 * columnCount;
+    }
+
+    /**
+     * Opens the first sheet of a file in the test data directory
+     *
+     * @param fileName .xls, .xlsx or .csv file name in resources/data
+     * @return test data of the sheet
+     */
+    public static TestData open(String fileName) {
+        return open(fileName, null);
+    }
+
+    /**
+     * Opens a sheet of a file in the test data directory
+     *
+     * @param fileName .xls, .xlsx or .csv file name in resources/data
+     * @param sheet    sheet name, null for the first sheet
+     * @return test data of the sheet
+     */
+    public static TestData open(String fileName, String sheet) {
+        File source = new File(TestDataCompiler.DATA_DIR, fileName);
+        if (!source.exists()) {
+            source = new File(TestDataCompiler.DATA_DIR.replaceFirst("^src/", ""), fileName);
+        }
+        return open(source, sheet);
+    }
+
+    /**
+     * Opens a sheet, compiling it first if it changed since it was last compiled. The opened sheet is
+     * reused while the content of the source file is unchanged.
+     *
+     * @param source .xls, .xlsx or .csv file
+     * @param sheet  sheet name, null for the first sheet
+     * @return test data of the sheet
+     * @throws RuntimeException if the sheet can't be compiled or read
+     */
+    public static TestData open(File source, String sheet) {
+        return open(source, sheet, false);
+    }
+
+    /**
+     * Opens a sheet, compiling it first if it changed since it was last compiled. The opened sheet is
+     * reused while the content of the source file is unchanged.
+     *
+     * @param source    .xls, .xlsx or .csv file
+     * @param sheet     sheet name, null for the first sheet
+     * @param rawValues true to read raw cell values instead of the text shown by Excel, see {@link ExcelReader}
+     * @return test data of the sheet
+     * @throws RuntimeException if the sheet can't be compiled or read
+     */
+    public static TestData open(File source, String sheet, boolean rawValues) {
+        String key = source.getAbsolutePath() + "#" + (sheet == null ? "" : sheet) + "#" + rawValues;
+        TestData data = opened.get(key);
+        try {
+            // compared by content, sheets written at runtime may change within the file time resolution
+            File target = TestDataCompiler.targetFile(source, sheet, rawValues);
+            if (data != null && data.file.equals(target)) {
+                return data;
+            }
+            data = new TestData(TestDataCompiler.compile(source, sheet, rawValues, target));
+            opened.put(key, data);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load test data " + source.getPath() + ": " + e.getMessage(), e);
+        }
+        return data;
+    }
+
+    /**
+     * @return column names, the first one is the key. Columns of rows longer than the header have empty names.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return number of rows, not counting the header
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Finds a row by key
+     *
+     * @param key value of the first column
+     * @return row as column name =&gt; value map, null if no row has this key
+     */
+    public Map<String, String> get(String key) {
+        int row = find(key);
+        return row < 0 ? null : row(row);
+    }
+
+    /**
+     * Finds a value by row key and column name
+     *
+     * @param key    value of the first column
+     * @param column column name
+     * @return value or null if no row has this key
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public String get(String key, String column) {
+        Integer index = columnIndex.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("No column '" + column + "' in " + columns);
+        }
+        int row = find(key);
+        return row < 0 ? null : cell(row, index);
+    }
+
+    /**
+     * Gets a row by position
+     *
+     * @param row 0 based row number, not counting the header
+     * @return row as column name =&gt; value map
+     */
+    public Map<String, String> row(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            values.putIfAbsent(columns.get(i), cell(row, i));
+        }
+        return values;
+    }
+
+    /**
+     * Gets the cells of a row by position
+     *
+     * @param row 0 based row number, not counting the header
+     * @return cell values in column order, empty for blank cells
+     */
+    public List<String> cells(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        List<String> values = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            values.add(cell(row, i));
+        }
+        return values;
+    }
+
+    private int find(String key) {
+        if (key == null || tableSize == 0) {
+            return -1;
+        }
+        int slot = slot(key, tableSize);
+        while (true) {
+            int row = buffer.getInt(indexStart + 4 * slot) - 1;
+            if (row < 0) {
+                return -1;
+            }
+            if (key.equals(cell(row, 0))) {
+                return row;
+            }
+            slot = (slot + 1) & (tableSize - 1);
+        }
+    }
+
+    private String cell(int row, int column) {
+        int offsets = columnStarts[column];
+        int start = buffer.getInt(offsets + 4 * row);
+        int end = buffer.getInt(offsets + 4 * (row + 1));
+        return decode(offsets + 4 * (rows + 1) + start, end - start);
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // hash table slot of a key, shared with the compiler
+    static int slot(String key, int tableSize) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (tableSize - 1);
+    }
+}
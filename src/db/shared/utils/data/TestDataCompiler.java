@@ -0,0 +1,338 @@
+package db.shared.utils.data;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compiles Excel and CSV test data into the binary files read by {@link TestData}
+ * <p>
+ * The first row of the sheet is the header and the first column is the key, rows longer than the header add
+ * unnamed columns. Compiled files are written to target/test-data as
+ * &lt;file name&gt;-&lt;sheet hash&gt;-&lt;content hash&gt;.tdb, so a sheet is only compiled again when its source
+ * changes and older compiled versions of it are deleted. The build runs main() in the process-classes phase
+ * to compile all files in resources/data up front.
+ * </p>
+ * File layout (big endian):
+ * <ul>
+ * <li>header: magic, version, column count, row count, hash table size</li>
+ * <li>column names: length prefixed UTF-8</li>
+ * <li>column directory: start of each column section</li>
+ * <li>key index: open addressing hash table of row number + 1 (0 = empty slot)</li>
+ * <li>column sections: row count + 1 value offsets followed by the UTF-8 values</li>
+ * </ul>
+ */
+public class TestDataCompiler {
+
+    static final int MAGIC = 0x54444231; // "TDB1"
+    static final int VERSION = 1;
+    static final String DATA_DIR = "src/db/shared/resources/data";
+    static final File OUTPUT_DIR = new File("target/test-data");
+
+    private TestDataCompiler() {
+    }
+
+    /**
+     * Compiles all .xls, .xlsx and .csv files of the data directory, Excel files both with shown and raw values
+     *
+     * @param args optional data directory, default src/db/shared/resources/data
+     */
+    public static void main(String[] args) {
+        File dir = new File(args.length > 0 ? args[0] : DATA_DIR);
+        File[] files = dir.listFiles((d, name) -> name.matches("(?i).*\\.(xlsx?|csv)$"));
+        if (files == null) {
+            System.err.println("-->Test data directory not found: " + dir.getPath());
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                System.out.println("Test data " + file.getName() + " => " + compile(file, null).getPath());
+                if (!file.getName().toLowerCase().endsWith(".csv")) {
+                    System.out.println("Test data " + file.getName() + " => " + compile(file, null, true).getPath());
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("-->Unable to compile test data " + file.getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the compiled file of a sheet, compiling it if the source changed since it was last compiled
+     *
+     * @param source .xls, .xlsx or .csv file
+     * @param sheet  sheet name, null for the first sheet (ignored for .csv)
+     * @return compiled file
+     * @throws IOException if source can't be read or compiled file can't be written
+     */
+    public static File compile(File source, String sheet) throws IOException {
+        return compile(source, sheet, false);
+    }
+
+    /**
+     * Gets the compiled file of a sheet, compiling it if the source changed since it was last compiled
+     *
+     * @param source    .xls, .xlsx or .csv file
+     * @param sheet     sheet name, null for the first sheet (ignored for .csv)
+     * @param rawValues true to compile raw cell values instead of the text shown by Excel, see {@link ExcelReader}
+     * @return compiled file
+     * @throws IOException if source can't be read or compiled file can't be written
+     */
+    public static File compile(File source, String sheet, boolean rawValues) throws IOException {
+        return compile(source, sheet, rawValues, targetFile(source, sheet, rawValues));
+    }
+
+    // compiles a sheet to the file named by targetFile()
+    static File compile(File source, String sheet, boolean rawValues, File target) throws IOException {
+        if (target.exists()) {
+            return target;
+        }
+        if (!OUTPUT_DIR.exists() && !OUTPUT_DIR.mkdirs() && !OUTPUT_DIR.exists()) {
+            throw new IOException("Unable to create " + OUTPUT_DIR.getPath());
+        }
+        File temp = File.createTempFile(target.getName(), ".tmp", OUTPUT_DIR);
+        try {
+            Table table = read(source, sheet, rawValues);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                table.write(out);
+            }
+            // another worker may have compiled the same file meanwhile, both results are identical
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        // drop compiled older versions of the same sheet
+        String prefix = target.getName().substring(0, target.getName().lastIndexOf('-') + 1);
+        File[] stale = OUTPUT_DIR.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".tdb") &&
+                !name.equals(target.getName()));
+        if (stale != null) {
+            for (File file : stale) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    System.err.println("-->Unable to delete stale test data " + file.getPath() + ": " + e.getMessage());
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Gets the name of the compiled file of a sheet, without compiling it
+     *
+     * @param source    .xls, .xlsx or .csv file
+     * @param sheet     sheet name, null for the first sheet
+     * @param rawValues true for the file compiled with raw cell values
+     * @return compiled file, which may not exist yet
+     * @throws IOException if source can't be read
+     */
+    static File targetFile(File source, String sheet, boolean rawValues) throws IOException {
+        String key = source.getAbsoluteFile().toPath().normalize() + ":" + (sheet == null ? "" : sheet) + ":" +
+                (rawValues ? "raw" : "shown");
+        String keyHash = hex(digest().digest(key.getBytes(StandardCharsets.UTF_8)), 4);
+        MessageDigest digest = digest();
+        digest.update((VERSION + ":" + key + ":").getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String name = source.getName().replaceAll("[^A-Za-z0-9_.]", "_");
+        return new File(OUTPUT_DIR, name + "-" + keyHash + "-" + hex(digest.digest(), 12) + ".tdb");
+    }
+
+    private static MessageDigest digest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+
+    private static Table read(File source, String sheet, boolean rawValues) throws IOException {
+        if (source.getName().toLowerCase().endsWith(".csv")) {
+            return readCsv(source);
+        }
+        Table table = null;
+        try (Stream<ExcelRow> rows = sheet == null ? ExcelReader.rows(source, 0, false, rawValues) :
+                ExcelReader.rows(source, sheet, false, rawValues)) {
+            for (ExcelRow row : (Iterable<ExcelRow>) rows::iterator) {
+                if (table == null) {
+                    table = new Table(row.getCells());
+                } else {
+                    table.add(row.getCells());
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(e.getMessage(), e.getCause() != null ? e.getCause() : e);
+        }
+        if (table == null) {
+            throw new IOException("No header row in " + source.getPath());
+        }
+        return table;
+    }
+
+    private static Table readCsv(File source) throws IOException {
+        Table table = null;
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            List<String> row;
+            while ((row = readCsvRecord(reader)) != null) {
+                if (row.size() == 1 && row.get(0).isEmpty()) {
+                    continue;
+                }
+                if (table == null) {
+                    table = new Table(row);
+                } else {
+                    table.add(row);
+                }
+            }
+        }
+        if (table == null) {
+            throw new IOException("No header row in " + source.getPath());
+        }
+        return table;
+    }
+
+    // reads one RFC 4180 record, quoted values may contain commas, quotes ("") and line breaks
+    private static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        value.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // columns of a sheet while it's compiled
+    private static class Table {
+        private final List<String> columns;
+        private final List<ByteArrayOutputStream> values = new ArrayList<>();
+        private final List<int[]> offsets = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private int rows = 0;
+
+        private Table(List<String> header) {
+            columns = new ArrayList<>(header);
+            for (int i = 0; i < columns.size(); i++) {
+                values.add(new ByteArrayOutputStream());
+            }
+        }
+
+        private void add(List<String> row) {
+            // earlier rows are empty in the added columns, their missing ends are read as 0
+            while (columns.size() < row.size()) {
+                columns.add("");
+                values.add(new ByteArrayOutputStream());
+            }
+            int[] ends = new int[columns.size()];
+            for (int i = 0; i < ends.length; i++) {
+                byte[] bytes = (i < row.size() ? row.get(i) : "").getBytes(StandardCharsets.UTF_8);
+                values.get(i).write(bytes, 0, bytes.length);
+                ends[i] = values.get(i).size();
+            }
+            offsets.add(ends);
+            keys.add(row.isEmpty() ? "" : row.get(0));
+            rows++;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            int tableSize = Integer.highestOneBit(Math.max(2, rows * 2) - 1) << 1;
+            int[] index = new int[tableSize];
+            for (int row = 0; row < rows; row++) {
+                // duplicate keys keep the first row
+                String key = keys.get(row);
+                int slot = TestData.slot(key, tableSize);
+                while (index[slot] != 0 && !keys.get(index[slot] - 1).equals(key)) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                if (index[slot] == 0) {
+                    index[slot] = row + 1;
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.size());
+            out.writeInt(rows);
+            out.writeInt(tableSize);
+            int position = 20;
+            List<byte[]> names = new ArrayList<>();
+            for (String column : columns) {
+                byte[] name = column.getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                position += 2 + name.length;
+            }
+            for (byte[] name : names) {
+                out.writeShort(name.length);
+                out.write(name);
+            }
+            position += 4 * columns.size() + 4 * tableSize;
+            for (ByteArrayOutputStream column : values) {
+                out.writeInt(position);
+                position += 4 * (rows + 1) + column.size();
+            }
+            for (int slot : index) {
+                out.writeInt(slot);
+            }
+            for (int column = 0; column < columns.size(); column++) {
+                out.writeInt(0);
+                for (int[] ends : offsets) {
+                    out.writeInt(column < ends.length ? ends[column] : 0);
+                }
+                values.get(column).writeTo(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package db.shared.utils.database.models;
+
+import db.shared.utils.database.utils.RowMapper;
+
+/**
+ * Customer record of the tbl_users table
+ */
+public class Customer {
+
+    /**
+     * Maps a tbl_users row
+     */
+    public static final RowMapper<Customer> MAPPER = row -> new Customer(
+            row.getString("first_name"),
+            row.getString("last_name"),
+            row.getString("email_id"),
+            row.getString("contact_no"));
+
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String contactNumber;
+
+    public Customer(String firstName, String lastName, String email, String contactNumber) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.contactNumber = contactNumber;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getContactNumber() {
+        return contactNumber;
+    }
+
+    /**
+     * @return values in the order of the UI table: first name, last name, email, contact number
+     */
+    public String[] toArray() {
+        return new String[]{firstName, lastName, email, contactNumber};
+    }
+
+    @Override
+    public String toString() {
+        return firstName + " " + lastName + " <" + email + "> " + contactNumber;
+    }
+}
@@ -3,12 +3,11 @@ package db.shared.utils.database.models;
 import db.framework.utils.StepUtils;
 import db.shared.resources.actions.page_object.HomePage;
 import db.shared.utils.CommonUtils;
-import db.shared.utils.database.utils.DBUtilities;
+import db.shared.utils.database.utils.QueryRegistry;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class CustomerService extends StepUtils {
 
@@ -19,66 +18,74 @@ public class CustomerService extends StepUtils {
      * @throws Throwable
      */
     public static String[] getAddedCustomerInformation() throws Throwable {
-        String[] customerInformation = null;
-        String sqlQuery = CommonUtils.getSqlQueries().get("retrieve_customer_info").toString();
-        Connection con = DBUtilities.setupMySqlDBConnection();
-        PreparedStatement preparedStatement = con.prepareStatement(sqlQuery);
-        ResultSet rs = preparedStatement.executeQuery();
-        while (rs.next()) {
-            String FirstName = rs.getString("first_name");
-            String LastName = rs.getString("last_name");
-            String Email = rs.getString("email_id");
-            String ContactNumber = rs.getString("contact_no");
-            customerInformation = new String[]{FirstName, LastName, Email, ContactNumber};
-        }
-        return customerInformation;
+        return toArray(getAddedCustomer());
     }
 
     public static String[] getUpdatedCustomerInformation() throws Throwable {
-        String[] updatedCustomerInformation = null;
-        String sqlQuery = CommonUtils.getSqlQueries().get("retrieve_updated_customer_info").toString().replaceAll("= \\?", "= " + HomePage.record_id + "");
-        Connection con = DBUtilities.setupMySqlDBConnection();
-        PreparedStatement preparedStatement = con.prepareStatement(sqlQuery);
-        ResultSet rs = preparedStatement.executeQuery();
-        while (rs.next()) {
-            String UpdatedFirstName = rs.getString("first_name");
-            String UpdatedLastName = rs.getString("last_name");
-            String UpdatedEmail = rs.getString("email_id");
-            String UpdatedContactNumber = rs.getString("contact_no");
-            updatedCustomerInformation = new String[]{UpdatedFirstName, UpdatedLastName, UpdatedEmail, UpdatedContactNumber};
-        }
-        return updatedCustomerInformation;
+        return toArray(getUpdatedCustomer());
     }
 
     public static String[] verifyRecordDeleted() throws Throwable {
-        String[] deletedCustomerInformation = null;
-        String sqlQuery = CommonUtils.getSqlQueries().get("retrieve_deleted_customer_info").toString().replaceAll("= \\?", "= " + HomePage.record_id + "");
-        Connection con = DBUtilities.setupMySqlDBConnection();
-        PreparedStatement preparedStatement = con.prepareStatement(sqlQuery);
-        ResultSet rs = preparedStatement.executeQuery();
-        while (rs.next()) {
-            String UpdatedFirstName = rs.getString("first_name");
-            String UpdatedLastName = rs.getString("last_name");
-            String UpdatedEmail = rs.getString("email_id");
-            String UpdatedContactNumber = rs.getString("contact_no");
-            deletedCustomerInformation = new String[]{UpdatedFirstName, UpdatedLastName, UpdatedEmail, UpdatedContactNumber};
-        }
-        return deletedCustomerInformation;
+        return toArray(findCustomer("retrieve_deleted_customer_info", HomePage.record_id));
     }
 
+    /**
+     * Method to get the last employee type of the mssql database
+     * <p>
+     * Its query is not known yet. Add a "retrieve_employee_type_info" entry with "database": "mssql" to
+     * queries.json, until then this fails with a query not found SQLException.
+     * </p>
+     *
+     * @return employee type code, description and color code
+     * @throws Throwable if the query is missing or fails
+     */
     public static String[] getClientInformation() throws Throwable {
-        String[] clientInformation = null;
-        String sqlQuery = CommonUtils.getSqlQueries().get("retrieve_employee_type_info").toString();
-        Connection con = DBUtilities.setupMSSqlDBConnection();
-        PreparedStatement preparedStatement = con.prepareStatement(sqlQuery);
-        ResultSet rs = preparedStatement.executeQuery();
-        while (rs.next()) {
-            String TypeCode = rs.getString("EmployeeTypeCode");
-            String TypeDesc = rs.getString("EmployeeTypeDesc");
-            String ColorCode = rs.getString("ColorCode");
-            clientInformation = new String[]{TypeCode, TypeDesc, ColorCode};
-        }
-        return clientInformation;
+        return QueryRegistry.last("retrieve_employee_type_info", row -> new String[]{
+                row.getString("EmployeeTypeCode"), row.getString("EmployeeTypeDesc"), row.getString("ColorCode")});
+    }
+
+    /**
+     * Method to get the last added customer
+     *
+     * @return customer or null if there are no customers
+     * @throws SQLException if query fails
+     */
+    public static Customer getAddedCustomer() throws SQLException {
+        return QueryRegistry.last("retrieve_customer_info", Customer.MAPPER);
+    }
+
+    /**
+     * Method to get the customer of the record edited in the UI
+     *
+     * @return customer or null if record doesn't exist
+     * @throws SQLException if query fails
+     */
+    public static Customer getUpdatedCustomer() throws SQLException {
+        return findCustomer("retrieve_updated_customer_info", HomePage.record_id);
+    }
+
+    /**
+     * Method to stream all customers, close the stream when done
+     *
+     * @return lazy stream of customers
+     * @throws SQLException if query fails
+     */
+    public static Stream<Customer> streamCustomers() throws SQLException {
+        return QueryRegistry.stream("retrieve_all_customers").map(row -> {
+            try {
+                return Customer.MAPPER.map(row);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static Customer findCustomer(String queryName, String recordId) throws SQLException {
+        return QueryRegistry.last(queryName, Customer.MAPPER, recordId);
+    }
+
+    private static String[] toArray(Customer customer) {
+        return customer == null ? null : customer.toArray();
     }
 
     /**
@@ -0,0 +1,482 @@
+package db.shared.utils.database.utils;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of connections to one database
+ * <p>
+ * Connections handed out are proxies, closing them gives the physical connection back to the pool.
+ * Idle connections are validated before reuse and connections held longer than the leak threshold
+ * are reported with the stack trace of the code that borrowed them.
+ * </p>
+ * Settings (databases.json or "[database]_db_[setting]" env variables):
+ * <ul>
+ * <li>min / max: number of connections kept open / allowed at the same time</li>
+ * <li>validation_query: query used to check a connection, default "SELECT 1"</li>
+ * <li>validation_interval_ms: idle time after which a connection is validated before reuse, default 30000</li>
+ * <li>connection_timeout_ms: max time to wait for a free connection, default 30000</li>
+ * <li>leak_threshold_ms: time after which a borrowed connection is reported as leaked, default 60000</li>
+ * <li>statement_cache_size: prepared statements kept open per connection, default 32, 0 disables the cache</li>
+ * <li>fetch_size: rows fetched per round trip by queries, default 0 (driver default)</li>
+ * </ul>
+ */
+public class ConnectionPool implements DataSource {
+
+    private final DBConnection database;
+    private final int min;
+    private final int max;
+    private final String validationQuery;
+    private final long validationInterval;
+    private final long connectionTimeout;
+    private final long leakThreshold;
+    private final int statementCacheSize;
+    private final int fetchSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed = false;
+    private PrintWriter logWriter;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * Creates a pool for a database
+     *
+     * @param database settings of the database
+     */
+    public ConnectionPool(DBConnection database) {
+        this.database = database;
+        this.max = Math.max(1, database.getIntSetting("max", 8));
+        this.min = Math.min(max, Math.max(0, database.getIntSetting("min", 0)));
+        this.validationQuery = database.getSetting("validation_query", "SELECT 1");
+        this.validationInterval = database.getIntSetting("validation_interval_ms", 30000);
+        this.connectionTimeout = database.getIntSetting("connection_timeout_ms", 30000);
+        this.leakThreshold = database.getIntSetting("leak_threshold_ms", 60000);
+        this.statementCacheSize = Math.max(0, database.getIntSetting("statement_cache_size", 32));
+        this.fetchSize = Math.max(0, database.getIntSetting("fetch_size", 0));
+        this.permits = new Semaphore(max, true);
+
+        Thread leakDetector = new Thread(this::detectLeaks, "db-pool-leak-detector-" + database.getName());
+        leakDetector.setDaemon(true);
+        leakDetector.start();
+    }
+
+    /**
+     * Opens the configured minimum number of connections
+     */
+    public void fill() {
+        while (open.get() < min && !closed) {
+            try {
+                idle.offerLast(createConnection());
+            } catch (SQLException e) {
+                System.err.println("-->Unable to fill " + database.getName() + " pool: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection. Close it to give it back to the pool.
+     *
+     * @return pooled connection
+     * @throws SQLException if pool is closed, no connection becomes free in time or connection can't be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + database.getName() + "' is closed");
+        }
+        long ts = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout waiting for a '" + database.getName() + "' connection: " + stats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a '" + database.getName() + "' connection", e);
+        }
+        waitNanos.add(System.nanoTime() - ts);
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    break;
+                }
+                discard(connection);
+            }
+            if (connection == null) {
+                connection = createConnection();
+            }
+            borrows.increment();
+            borrowed.put(connection, new Borrow());
+            return connection.open();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections, connections in use are closed when they are given back
+     */
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * @return pool statistics in a printable format
+     */
+    public String stats() {
+        return database.getName() + " pool: " + open.get() + " open, " + idle.size() + " idle, " +
+                borrowed.size() + " in use (max " + max + "), " + created.sum() + " created, " +
+                borrows.sum() + " borrows, " + TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()) + " ms waiting, " +
+                validationFailures.sum() + " failed validations, " + leaks.sum() + " leaks, " +
+                statementHits.sum() + "/" + (statementHits.sum() + statementMisses.sum()) + " statement cache hits";
+    }
+
+    /**
+     * @return fetch size for queries, 0 for the driver default
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return number of physical connections currently open
+     */
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    /**
+     * @return number of connections currently borrowed
+     */
+    public int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return total number of connections borrowed
+     */
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    /**
+     * @return total time spent waiting for a free connection in milliseconds
+     */
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = database.create();
+        open.incrementAndGet();
+        created.increment();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        if (System.currentTimeMillis() - connection.lastUsed < validationInterval) {
+            return true;
+        }
+        try (Statement statement = connection.physical.createStatement()) {
+            statement.setQueryTimeout(5);
+            statement.execute(validationQuery);
+            return true;
+        } catch (SQLException e) {
+            validationFailures.increment();
+            System.err.println("-->Discarding invalid " + database.getName() + " connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection connection) {
+        borrowed.remove(connection);
+        try {
+            if (closed || connection.physical.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (!connection.physical.getAutoCommit()) {
+                connection.physical.rollback();
+                connection.physical.setAutoCommit(true);
+            }
+            connection.releaseStatements();
+            connection.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(connection);
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        open.decrementAndGet();
+        connection.statements.clear();
+        try {
+            connection.physical.close();
+        } catch (SQLException e) {
+            // connection is already broken
+        }
+    }
+
+    private void detectLeaks() {
+        while (!closed) {
+            try {
+                Thread.sleep(Math.max(1000, leakThreshold / 2));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Borrow borrow : borrowed.values()) {
+                if (!borrow.reported && now - borrow.time > leakThreshold) {
+                    borrow.reported = true;
+                    leaks.increment();
+                    System.err.println("-->Possible " + database.getName() + " connection leak, borrowed " +
+                            (now - borrow.time) + " ms ago by thread " + borrow.thread + " at:");
+                    borrow.stack.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are configured per pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper of " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // where and when a connection was borrowed
+    private static class Borrow {
+        private final long time = System.currentTimeMillis();
+        private final String thread = Thread.currentThread().getName();
+        private final Throwable stack = new Throwable("connection borrowed here");
+        private volatile boolean reported = false;
+    }
+
+    // physical connection owned by the pool
+    private class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsed = System.currentTimeMillis();
+        // sql => open statement, least recently used first
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        // prepare a statement or reuse the cached one, closing the returned statement keeps it open for reuse
+        private PreparedStatement prepare(String sql) throws SQLException {
+            if (statementCacheSize == 0) {
+                return physical.prepareStatement(sql);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.inUse) {
+                // same query is already running on this connection, don't share the statement
+                statementMisses.increment();
+                return physical.prepareStatement(sql);
+            }
+            if (cached == null) {
+                statementMisses.increment();
+                cached = new CachedStatement(sql, physical.prepareStatement(sql));
+                statements.put(sql, cached);
+                evictStatements();
+            } else {
+                statementHits.increment();
+            }
+            cached.inUse = true;
+            return cached.open();
+        }
+
+        // statements the borrower didn't close can be reused by the next one
+        private void releaseStatements() throws SQLException {
+            for (CachedStatement cached : statements.values()) {
+                if (cached.inUse) {
+                    cached.inUse = false;
+                    cached.statement.clearParameters();
+                }
+            }
+        }
+
+        private void evictStatements() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (statements.size() > statementCacheSize && iterator.hasNext()) {
+                CachedStatement eldest = iterator.next();
+                if (!eldest.inUse) {
+                    iterator.remove();
+                    eldest.closeQuietly();
+                }
+            }
+        }
+
+        // hand out a new logical connection, only valid until it's closed
+        private Connection open() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class[]{Connection.class}, new InvocationHandler() {
+                        private boolean logicallyClosed = false;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "close":
+                                    if (!logicallyClosed) {
+                                        logicallyClosed = true;
+                                        giveBack(PooledConnection.this);
+                                    }
+                                    return null;
+                                case "isClosed":
+                                    return logicallyClosed || physical.isClosed();
+                                case "prepareStatement":
+                                    if (!logicallyClosed && args.length == 1) {
+                                        return prepare((String) args[0]);
+                                    }
+                                    break;
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "toString":
+                                    return "Pooled " + database.getName() + " connection " + physical;
+                            }
+                            if (logicallyClosed) {
+                                throw new SQLException("Connection is closed");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    });
+        }
+    }
+
+    // prepared statement kept open on its physical connection
+    private static class CachedStatement {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+
+        private CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        // hand out the statement until it's closed, closing only clears its parameters
+        private PreparedStatement open() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                        private boolean logicallyClosed = false;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "close":
+                                    if (!logicallyClosed) {
+                                        logicallyClosed = true;
+                                        inUse = false;
+                                        try {
+                                            statement.clearParameters();
+                                        } catch (SQLException e) {
+                                            // statement is reset when it's reused
+                                        }
+                                    }
+                                    return null;
+                                case "isClosed":
+                                    return logicallyClosed || statement.isClosed();
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "toString":
+                                    return "Cached statement " + sql;
+                            }
+                            if (logicallyClosed) {
+                                throw new SQLException("Statement is closed");
+                            }
+                            try {
+                                return method.invoke(statement, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    });
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // connection is already broken
+            }
+        }
+    }
+}
@@ -1,54 +1,111 @@
 package db.shared.utils.database.utils;
 
+import db.framework.runner.MainRunner;
+import db.framework.utils.Utils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
-
+/**
+ * Connection settings of a named database and factory of its physical connections
+ * <p>
+ * Settings are read from resources/data/databases.json. Each one can be overridden with an env variable or
+ * ex_param named "[database]_db_[setting]", for example "mysql_db_url" or "mssql_db_password".
+ * </p>
+ */
 public class DBConnection {
 
-    public static Connection con = null;
+    private static final String CONFIG_FILE = "src/db/shared/resources/data/databases.json";
+    private static JSONObject config;
 
-    public Connection createMySqlConnection() {
+    private final String name;
+    private final JSONObject settings;
 
-        if (con == null) {
-            String url = "jdbc:mysql://10.101.15.48:3306/test";
-            String username = "root";
-            String password = "";
+    /**
+     * Reads the settings of a database
+     *
+     * @param name database name as in databases.json ("mysql", "mssql")
+     */
+    public DBConnection(String name) {
+        this.name = name;
+        JSONObject databases = getConfig();
+        this.settings = databases != null && databases.has(name) ? databases.getJSONObject(name) : new JSONObject();
+    }
 
-            try {
-                Class.forName("com.mysql.jdbc.Driver");
-                System.out.println("Connecting to the " + url + " database...");
-                con = DriverManager.getConnection(url, username, password);
-            } catch (Exception e) {
-                System.out.println("Error occurs while creating database connection" + e.getMessage());
+    /**
+     * Opens a new physical connection
+     *
+     * @return connection to the database
+     * @throws SQLException if the connection can't be opened
+     */
+    public Connection create() throws SQLException {
+        String driver = getSetting("driver", null);
+        String url = getSetting("url", null);
+        if (url == null) {
+            throw new SQLException("No url configured for database '" + name + "'");
+        }
+        try {
+            if (driver != null) {
+                Class.forName(driver);
             }
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("JDBC driver not found for database '" + name + "': " + driver, e);
         }
-        return con;
+        System.out.println("Connecting to the " + url + " database...");
+        return DriverManager.getConnection(url, getSetting("user", ""), getSetting("password", ""));
     }
 
-    public Connection createMSSqlConnection() {
-        String db_connect_string = "jdbc:sqlserver://DEV-54;databaseName=FMSIClient;integratedSecurity=false";
-        String db_userid = "FMSI_APP";
-        String db_password = "00001111";
-        try {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            con = DriverManager.getConnection(db_connect_string, db_userid, db_password);
-            System.out.println(con + " Connection created");
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Error occurs while creating connection to sql database" + e.getMessage());
-        }
-        return con;
+    /**
+     * @return name of the database
+     */
+    public String getName() {
+        return name;
     }
 
-    public static void closeConnection() {
-        try {
-            if (con != null && !con.isClosed())
-                con.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Gets a setting of this database
+     *
+     * @param key          setting name
+     * @param defaultValue value to use if setting is not configured
+     * @return setting value
+     */
+    public String getSetting(String key, String defaultValue) {
+        String value = MainRunner.getEnvOrExParam(name + "_db_" + key);
+        if (value != null) {
+            return value;
         }
+        return settings.has(key) ? String.valueOf(settings.get(key)) : defaultValue;
+    }
+
+    /**
+     * Gets a numeric setting of this database
+     *
+     * @param key          setting name
+     * @param defaultValue value to use if setting is not configured or not a number
+     * @return setting value
+     */
+    public int getIntSetting(String key, int defaultValue) {
+        return Utils.parseInt(getSetting(key, null), defaultValue);
     }
 
-}
\ No newline at end of file
+    private static synchronized JSONObject getConfig() {
+        if (config == null) {
+            File file = new File(CONFIG_FILE);
+            if (!file.exists()) {
+                file = new File(CONFIG_FILE.replaceFirst("^src/", ""));
+            }
+            try {
+                config = new JSONObject(Utils.readTextFile(file));
+            } catch (IOException | JSONException e) {
+                System.err.println("-->Unable to read database configuration " + file.getPath() + ": " + e.getMessage());
+                config = new JSONObject();
+            }
+        }
+        return config;
+    }
+}
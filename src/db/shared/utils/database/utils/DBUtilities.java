@@ -1,24 +1,62 @@
 package db.shared.utils.database.utils;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DBUtilities {
-    public static DBConnection dbConnection = new DBConnection();
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DBUtilities::closeAll));
+    }
 
     public DBUtilities() {
     }
 
+    /**
+     * Gets the connection pool of a database, creating it on first use
+     *
+     * @param name database name as in databases.json ("mysql", "mssql")
+     * @return pooled DataSource of the database
+     */
+    public static ConnectionPool getDataSource(String name) {
+        return pools.computeIfAbsent(name, key -> {
+            ConnectionPool pool = new ConnectionPool(new DBConnection(key));
+            pool.fill();
+            return pool;
+        });
+    }
+
     /**
      * Method to setup DB connection
      *
-     * @return DB connection object
+     * @return pooled DB connection object, close it to give it back to the pool
+     * @throws SQLException if no connection could be obtained
      */
-    public static Connection setupMySqlDBConnection() {
-        return dbConnection.createMySqlConnection();
+    public static Connection setupMySqlDBConnection() throws SQLException {
+        return getDataSource("mysql").getConnection();
     }
 
-    public static Connection setupMSSqlDBConnection() {
-        return dbConnection.createMSSqlConnection();
+    /**
+     * Method to setup MSSQL DB connection
+     *
+     * @return pooled DB connection object, close it to give it back to the pool
+     * @throws SQLException if no connection could be obtained
+     */
+    public static Connection setupMSSqlDBConnection() throws SQLException {
+        return getDataSource("mssql").getConnection();
+    }
+
+    /**
+     * Closes all connection pools and prints their statistics
+     */
+    public static void closeAll() {
+        for (ConnectionPool pool : pools.values()) {
+            System.out.println(pool.stats());
+            pool.close();
+        }
     }
 
-}
\ No newline at end of file
+}
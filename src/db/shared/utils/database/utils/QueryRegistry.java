@@ -0,0 +1,391 @@
+package db.shared.utils.database.utils;
+
+import db.framework.utils.Utils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Named SQL queries from resources/data/queries.json
+ * <p>
+ * The file is read once. A query is either a SQL string run on the "mysql" database or an object
+ * {"sql": "...", "database": "mssql"}. Parameters are bound to the "?" placeholders in order, so the
+ * pool can reuse the prepared statement of each query on every connection. Rows are read forward only
+ * with the fetch size of the database and the column metadata of each query is resolved once.
+ * </p>
+ * A query object with "stream_results": true has MySQL Connector/J stream its rows one at a time. The
+ * connection can't run any other statement until the stream is closed, so only use it for queries read
+ * through {@link #stream(String, Object...)} without running other queries on the same connection.
+ */
+public class QueryRegistry {
+
+    private static final String QUERIES_FILE = "src/db/shared/resources/data/queries.json";
+    private static final String DEFAULT_DATABASE = "mysql";
+    private static Map<String, NamedQuery> queries;
+
+    private QueryRegistry() {
+    }
+
+    /**
+     * Runs a named query and reads all rows
+     *
+     * @param name   query name in queries.json
+     * @param params values bound to the "?" placeholders
+     * @return rows as column label =&gt; value maps, in result order
+     * @throws SQLException if query is unknown or fails
+     */
+    public static List<Map<String, Object>> query(String name, Object... params) throws SQLException {
+        return list(name, Row::toMap, params);
+    }
+
+    /**
+     * Runs a named query and maps all rows
+     *
+     * @param name   query name in queries.json
+     * @param mapper maps each row
+     * @param params values bound to the "?" placeholders
+     * @param <T>    type of the mapped rows
+     * @return mapped rows in result order
+     * @throws SQLException if query is unknown or fails
+     */
+    public static <T> List<T> list(String name, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (Stream<Row> stream = stream(name, params)) {
+            Iterator<Row> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                rows.add(mapper.map(iterator.next()));
+            }
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a named query and maps its first row, remaining rows are not read
+     *
+     * @param name   query name in queries.json
+     * @param mapper maps the row
+     * @param params values bound to the "?" placeholders
+     * @param <T>    type of the mapped row
+     * @return mapped row or null if the query returned no rows
+     * @throws SQLException if query is unknown or fails
+     */
+    public static <T> T first(String name, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Stream<Row> stream = stream(name, params)) {
+            Iterator<Row> iterator = stream.iterator();
+            return iterator.hasNext() ? mapper.map(iterator.next()) : null;
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Runs a named query and maps its last row, reading the rows one by one
+     *
+     * @param name   query name in queries.json
+     * @param mapper maps the row
+     * @param params values bound to the "?" placeholders
+     * @param <T>    type of the mapped row
+     * @return mapped row or null if the query returned no rows
+     * @throws SQLException if query is unknown or fails
+     */
+    public static <T> T last(String name, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Stream<Row> stream = stream(name, params)) {
+            Row last = stream.reduce((previous, next) -> next).orElse(null);
+            return last == null ? null : mapper.map(last);
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Runs a named query and streams its rows as they are fetched from the database.
+     * The stream holds a pooled connection until it's closed, use it in a try-with-resources block.
+     * SQL errors while reading rows are thrown as RuntimeException with the SQLException as cause.
+     *
+     * @param name   query name in queries.json
+     * @param params values bound to the "?" placeholders
+     * @return lazy stream of rows in result order
+     * @throws SQLException if query is unknown or fails
+     */
+    public static Stream<Row> stream(String name, Object... params) throws SQLException {
+        NamedQuery query = get(name);
+        ConnectionPool pool = DBUtilities.getDataSource(query.database);
+        Connection con = pool.getConnection();
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            statement = prepare(con, query.sql, params);
+            if (query.streamResults) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+            } else if (pool.getFetchSize() != 0) {
+                statement.setFetchSize(pool.getFetchSize());
+            }
+            rs = statement.executeQuery();
+            Row.Columns columns = query.columns;
+            if (columns == null) {
+                columns = query.columns = new Row.Columns(rs.getMetaData());
+            }
+            return StreamSupport.stream(new RowSpliterator(rs, columns), false)
+                    .onClose(closer(rs, statement, con));
+        } catch (SQLException | RuntimeException e) {
+            closer(rs, statement, con).run();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a named insert, update or delete
+     *
+     * @param name   query name in queries.json
+     * @param params values bound to the "?" placeholders
+     * @return number of affected rows
+     * @throws SQLException if query is unknown or fails
+     */
+    public static int update(String name, Object... params) throws SQLException {
+        NamedQuery query = get(name);
+        try (Connection con = DBUtilities.getDataSource(query.database).getConnection();
+             PreparedStatement statement = prepare(con, query.sql, params)) {
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Prepares a statement and binds its parameters
+     * <p>
+     * A collection or array parameter is expanded to a list of placeholders, for "id in (?)" queries.
+     * Lists are padded to a power of two by repeating their last value so that lists of similar sizes
+     * share a cached statement. An empty list matches nothing.
+     * </p>
+     *
+     * @param con    connection to prepare the statement on
+     * @param sql    SQL with "?" placeholders
+     * @param params values bound to the placeholders
+     * @return statement ready to execute
+     * @throws SQLException if statement can't be prepared or a parameter can't be bound
+     */
+    public static PreparedStatement prepare(Connection con, String sql, Object... params) throws SQLException {
+        List<Object> values = new ArrayList<>(params.length);
+        PreparedStatement statement = con.prepareStatement(expand(sql, params, values));
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                bind(statement, i + 1, values.get(i));
+            }
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    /**
+     * Gets the SQL of a named query
+     *
+     * @param name query name in queries.json
+     * @return SQL of the query
+     * @throws SQLException if query is unknown
+     */
+    public static String getSql(String name) throws SQLException {
+        return get(name).sql;
+    }
+
+    /**
+     * Gets the database a named query runs on
+     *
+     * @param name query name in queries.json
+     * @return database name as in databases.json
+     * @throws SQLException if query is unknown
+     */
+    public static String getDatabase(String name) throws SQLException {
+        return get(name).database;
+    }
+
+    /**
+     * @return all queries as they were read from queries.json
+     * @throws RuntimeException if queries.json can't be read
+     */
+    public static JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, NamedQuery> entry : getQueries().entrySet()) {
+            json.put(entry.getKey(), entry.getValue().sql);
+        }
+        return json;
+    }
+
+    private static Runnable closer(AutoCloseable... resources) {
+        return () -> {
+            for (AutoCloseable resource : resources) {
+                if (resource == null) {
+                    continue;
+                }
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    System.err.println("-->Unable to close " + resource + ": " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    private static SQLException unwrap(RuntimeException e) {
+        if (e.getCause() instanceof SQLException) {
+            return (SQLException) e.getCause();
+        }
+        throw e;
+    }
+
+    // replaces list parameters with one placeholder per value, collecting the values to bind in order
+    private static String expand(String sql, Object[] params, List<Object> values) {
+        boolean hasList = false;
+        for (Object param : params) {
+            hasList |= param instanceof Collection || (param != null && param.getClass().isArray());
+        }
+        if (!hasList) {
+            Collections.addAll(values, params);
+            return sql;
+        }
+        StringBuilder expanded = new StringBuilder(sql.length() + 16);
+        boolean quoted = false;
+        int index = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (c != '?' || quoted || index >= params.length) {
+                expanded.append(c);
+                continue;
+            }
+            Object param = params[index++];
+            List<Object> list = asList(param);
+            if (list == null) {
+                expanded.append('?');
+                values.add(param);
+            } else if (list.isEmpty()) {
+                expanded.append("NULL");
+            } else {
+                int size = Integer.highestOneBit(list.size());
+                size = size == list.size() ? size : size << 1;
+                for (int i = 0; i < size; i++) {
+                    expanded.append(i == 0 ? "?" : ", ?");
+                    values.add(list.get(Math.min(i, list.size() - 1)));
+                }
+            }
+        }
+        return expanded.toString();
+    }
+
+    private static List<Object> asList(Object param) {
+        if (param instanceof Collection) {
+            return new ArrayList<>((Collection<?>) param);
+        }
+        if (param == null || !param.getClass().isArray()) {
+            return null;
+        }
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < Array.getLength(param); i++) {
+            list.add(Array.get(param, i));
+        }
+        return list;
+    }
+
+    private static void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.VARCHAR);
+        } else if (value instanceof java.util.Date && !(value instanceof java.sql.Date || value instanceof Time || value instanceof Timestamp)) {
+            statement.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        } else {
+            statement.setObject(index, value);
+        }
+    }
+
+    private static NamedQuery get(String name) throws SQLException {
+        NamedQuery query = getQueries().get(name);
+        if (query == null) {
+            throw new SQLException("Query '" + name + "' not found in " + QUERIES_FILE);
+        }
+        return query;
+    }
+
+    private static synchronized Map<String, NamedQuery> getQueries() {
+        if (queries == null) {
+            File file = new File(QUERIES_FILE);
+            if (!file.exists()) {
+                file = new File(QUERIES_FILE.replaceFirst("^src/", ""));
+            }
+            Map<String, NamedQuery> loaded = new HashMap<>();
+            try {
+                JSONObject json = new JSONObject(Utils.readTextFile(file));
+                for (String name : json.keySet()) {
+                    JSONObject entry = json.optJSONObject(name);
+                    if (entry != null) {
+                        loaded.put(name, new NamedQuery(entry.getString("sql"), entry.optString("database", DEFAULT_DATABASE),
+                                entry.optBoolean("stream_results", false)));
+                    } else {
+                        loaded.put(name, new NamedQuery(json.getString(name), DEFAULT_DATABASE, false));
+                    }
+                }
+            } catch (IOException | JSONException e) {
+                // not cached, the next lookup reads the file again
+                throw new RuntimeException("Unable to read queries " + file.getPath() + ": " + e.getMessage(), e);
+            }
+            queries = Collections.unmodifiableMap(loaded);
+        }
+        return queries;
+    }
+
+    private static class NamedQuery {
+        private final String sql;
+        private final String database;
+        private final boolean streamResults;
+        // resolved from the first result set of the query
+        private volatile Row.Columns columns;
+
+        private NamedQuery(String sql, String database, boolean streamResults) {
+            this.sql = sql;
+            this.database = database;
+            this.streamResults = streamResults;
+        }
+    }
+
+    // reads the next row when the stream asks for it
+    private static class RowSpliterator extends Spliterators.AbstractSpliterator<Row> {
+        private final ResultSet rs;
+        private final Row.Columns columns;
+
+        private RowSpliterator(ResultSet rs, Row.Columns columns) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Row> action) {
+            try {
+                if (!rs.next()) {
+                    return false;
+                }
+                action.accept(columns.read(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new RuntimeException("Unable to read row: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package db.shared.utils.database.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two sets of records by key, for example the rows of a UI table against the matching database rows
+ * <p>
+ * Records are indexed by key once and compared with a single pass over the expected records, so the
+ * result doesn't depend on row order. Values are compared as trimmed strings and null equals an empty value.
+ * </p>
+ */
+public class RecordReconciler {
+
+    private RecordReconciler() {
+    }
+
+    /**
+     * Indexes records by one of their columns. For duplicate keys the first record is kept.
+     *
+     * @param records   records as lists of column values
+     * @param keyColumn position of the key column
+     * @return key =&gt; record in record order
+     */
+    public static Map<String, List<String>> index(Collection<List<String>> records, int keyColumn) {
+        Map<String, List<String>> indexed = new LinkedHashMap<>(records.size() * 2);
+        for (List<String> record : records) {
+            if (record.size() <= keyColumn) {
+                continue;
+            }
+            String key = normalize(record.get(keyColumn));
+            if (indexed.putIfAbsent(key, record) != null) {
+                System.err.println("-->Duplicate record key '" + key + "', keeping the first record");
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Compares records with the same key column by column
+     *
+     * @param columns  names of the compared columns, in record order
+     * @param expected key =&gt; expected record
+     * @param actual   key =&gt; actual record
+     * @return differences between both sets
+     */
+    public static Report reconcile(List<String> columns, Map<String, List<String>> expected, Map<String, List<String>> actual) {
+        Report report = new Report(columns);
+        for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+            List<String> found = actual.get(entry.getKey());
+            if (found == null) {
+                report.missing.add(entry.getKey());
+                continue;
+            }
+            report.compared++;
+            for (int i = 0; i < columns.size(); i++) {
+                String want = normalize(valueAt(entry.getValue(), i));
+                String got = normalize(valueAt(found, i));
+                if (!want.equals(got)) {
+                    report.mismatched.add(new Mismatch(entry.getKey(), columns.get(i), want, got));
+                }
+            }
+        }
+        for (String key : actual.keySet()) {
+            if (!expected.containsKey(key)) {
+                report.extra.add(key);
+            }
+        }
+        return report;
+    }
+
+    private static String valueAt(List<String> record, int index) {
+        return index < record.size() ? record.get(index) : null;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * Differences found by a reconciliation
+     */
+    public static class Report {
+        private final List<String> columns;
+        private final List<String> missing = new ArrayList<>();
+        private final List<String> extra = new ArrayList<>();
+        private final List<Mismatch> mismatched = new ArrayList<>();
+        private int compared = 0;
+
+        private Report(List<String> columns) {
+            this.columns = columns;
+        }
+
+        /**
+         * @return keys of expected records that were not found
+         */
+        public List<String> getMissing() {
+            return Collections.unmodifiableList(missing);
+        }
+
+        /**
+         * @return keys of found records that were not expected
+         */
+        public List<String> getExtra() {
+            return Collections.unmodifiableList(extra);
+        }
+
+        /**
+         * @return columns with different values in records found on both sides
+         */
+        public List<Mismatch> getMismatched() {
+            return Collections.unmodifiableList(mismatched);
+        }
+
+        /**
+         * @return number of records found on both sides
+         */
+        public int getCompared() {
+            return compared;
+        }
+
+        /**
+         * @param allowExtra true if found records that were not expected are fine
+         * @return true if there are no differences
+         */
+        public boolean matches(boolean allowExtra) {
+            return missing.isEmpty() && mismatched.isEmpty() && (allowExtra || extra.isEmpty());
+        }
+
+        /**
+         * @return differences as JSON: compared, missing, extra and mismatched records
+         */
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("columns", new JSONArray(columns));
+            json.put("compared", compared);
+            json.put("missing", new JSONArray(missing));
+            json.put("extra", new JSONArray(extra));
+            JSONArray mismatches = new JSONArray();
+            for (Mismatch mismatch : mismatched) {
+                mismatches.put(new JSONObject()
+                        .put("key", mismatch.key)
+                        .put("column", mismatch.column)
+                        .put("expected", mismatch.expected)
+                        .put("actual", mismatch.actual));
+            }
+            json.put("mismatched", mismatches);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(compared).append(" records compared, ").append(missing.size()).append(" missing, ")
+                    .append(extra.size()).append(" extra, ").append(mismatched.size()).append(" mismatched values");
+            if (!missing.isEmpty()) {
+                text.append("\n  missing: ").append(missing);
+            }
+            if (!extra.isEmpty()) {
+                text.append("\n  extra: ").append(extra);
+            }
+            for (Mismatch mismatch : mismatched) {
+                text.append("\n  ").append(mismatch);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Column with different values in the expected and actual record
+     */
+    public static class Mismatch {
+        private final String key;
+        private final String column;
+        private final String expected;
+        private final String actual;
+
+        private Mismatch(String key, String column, String expected, String actual) {
+            this.key = key;
+            this.column = column;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getExpected() {
+            return expected;
+        }
+
+        public String getActual() {
+            return actual;
+        }
+
+        @Override
+        public String toString() {
+            return key + "." + column + ": expected [" + expected + "] but was [" + actual + "]";
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package db.shared.utils.database.utils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One row of a query result
+ * <p>
+ * Column labels are case insensitive. The column metadata is resolved once per query and shared by all of
+ * its rows, a row only holds its values so it stays valid after the result set moves on.
+ * </p>
+ */
+public class Row {
+
+    private final Columns columns;
+    private final Object[] values;
+
+    Row(Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * @return number of columns
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Gets a value by column label
+     *
+     * @param label column label
+     * @return column value, null for SQL NULL
+     * @throws IllegalArgumentException if the query has no such column
+     */
+    public Object get(String label) {
+        return values[columns.indexOf(label)];
+    }
+
+    /**
+     * Gets a value by column position
+     *
+     * @param index 1 based column position
+     * @return column value, null for SQL NULL
+     */
+    public Object get(int index) {
+        return values[index - 1];
+    }
+
+    /**
+     * @param label column label
+     * @return column value as a string, null for SQL NULL
+     */
+    public String getString(String label) {
+        Object value = get(label);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * @param label column label
+     * @return column value as a long, null for SQL NULL
+     */
+    public Long getLong(String label) {
+        Object value = get(label);
+        if (value == null || value instanceof Long) {
+            return (Long) value;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString().trim());
+    }
+
+    /**
+     * @param label column label
+     * @return column value as an int, null for SQL NULL
+     */
+    public Integer getInt(String label) {
+        Long value = getLong(label);
+        return value == null ? null : value.intValue();
+    }
+
+    /**
+     * @param label column label
+     * @return true if the query has this column
+     */
+    public boolean has(String label) {
+        return columns.labels.containsKey(label);
+    }
+
+    /**
+     * @return column label =&gt; value map in column order
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            map.put(columns.names[i], values[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    // column labels of a query, resolved from the metadata of its first result set
+    static class Columns {
+        private final String[] names;
+        private final Map<String, Integer> labels;
+
+        Columns(ResultSetMetaData meta) throws SQLException {
+            names = new String[meta.getColumnCount()];
+            Map<String, Integer> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < names.length; i++) {
+                names[i] = meta.getColumnLabel(i + 1);
+                map.putIfAbsent(names[i], i);
+            }
+            labels = Collections.unmodifiableMap(map);
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        int indexOf(String label) {
+            Integer index = labels.get(label);
+            if (index == null) {
+                throw new IllegalArgumentException("No column '" + label + "' in " + labels.keySet());
+            }
+            return index;
+        }
+
+        Row read(ResultSet rs) throws SQLException {
+            Object[] values = new Object[names.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rs.getObject(i + 1);
+            }
+            return new Row(this, values);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package db.shared.utils.database.utils;
+
+import java.sql.SQLException;
+
+/**
+ * Maps a result row to an object
+ *
+ * @param <T> type of the mapped object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row
+     *
+     * @param row row to map, only valid during this call
+     * @return mapped object
+     * @throws SQLException if a column can't be read
+     */
+    T map(Row row) throws SQLException;
+}